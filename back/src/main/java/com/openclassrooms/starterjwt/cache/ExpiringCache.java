@@ -0,0 +1,165 @@
+package com.openclassrooms.starterjwt.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Small in-process cache bounded both by size (least recently used entries go first)
+ * and by a time-to-live per entry. Loaders run outside the lock so a slow database
+ * call never blocks readers of other keys. Every invalidation bumps a generation
+ * counter, and a load that started before it is returned but not cached, so a
+ * lookup racing with a delete cannot bring the stale value back.
+ */
+public class ExpiringCache<K, V> {
+    private final int maxSize;
+    private final long ttlMs;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // guarded by entries
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringCache(int maxSize, long ttlMs) {
+        this(maxSize, ttlMs, System::currentTimeMillis);
+    }
+
+    public ExpiringCache(int maxSize, long ttlMs, LongSupplier clock) {
+        if (maxSize <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("maxSize and ttlMs must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long startedAt;
+        synchronized (entries) {
+            startedAt = generation;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            store(key, loaded, startedAt);
+        }
+        return loaded;
+    }
+
+    public V getIfPresent(K key) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        store(key, value, -1L);
+    }
+
+    private void store(K key, V value, long startedAt) {
+        Entry<V> entry = new Entry<>(value, clock.getAsLong() + ttlMs);
+        synchronized (entries) {
+            if (startedAt >= 0 && startedAt != generation) {
+                return;
+            }
+            entries.put(key, entry);
+            if (entries.size() > maxSize) {
+                Iterator<K> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateIf(Predicate<? super V> predicate) {
+        synchronized (entries) {
+            generation++;
+            entries.values().removeIf(entry -> predicate.test(entry.value));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder(name + ".hits", this, ExpiringCache::getHits).register(registry);
+        FunctionCounter.builder(name + ".misses", this, ExpiringCache::getMisses).register(registry);
+        FunctionCounter.builder(name + ".evictions", this, ExpiringCache::getEvictions).register(registry);
+        Gauge.builder(name + ".size", this, ExpiringCache::size).register(registry);
+        Gauge.builder(name + ".hit.ratio", this, ExpiringCache::getHitRatio).register(registry);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,27 +1,42 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.JwtVerification;
+import com.openclassrooms.starterjwt.security.jwt.TokenDenylist;
+import com.openclassrooms.starterjwt.security.services.PasswordRehashService;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,49 +46,98 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final TokenDenylist tokenDenylist;
+    private final RefreshTokenService refreshTokenService;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final Executor passwordHashingExecutor;
+    private final PasswordRehashService passwordRehashService;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            TokenDenylist tokenDenylist,
+            RefreshTokenService refreshTokenService,
+            UserDetailsServiceImpl userDetailsService,
+            @Qualifier("passwordHashingExecutor") Executor passwordHashingExecutor,
+            PasswordRehashService passwordRehashService) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.tokenDenylist = tokenDenylist;
+        this.refreshTokenService = refreshTokenService;
+        this.userDetailsService = userDetailsService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.passwordRehashService = passwordRehashService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        // an AuthenticationException completes the future exceptionally and still ends up as a 401
+        return onPasswordHashingExecutor(() -> login(loginRequest));
+    }
 
+    private ResponseEntity<?> login(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        passwordRehashService.rehashIfNeeded(userDetails, loginRequest.getPassword());
+
+        JwtResponse response = new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                userDetails.getAdmin());
+        response.setRefreshToken(refreshTokenService.issue(userDetails.getId()));
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshRequest refreshRequest) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        if (rotation == null) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+        UserDetailsImpl userDetails;
+        try {
+            userDetails = userDetailsService.loadUserById(rotation.getUserId());
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid refresh token!"));
+        }
+
+        JwtResponse response = new JwtResponse(jwtUtils.generateJwtToken(userDetails),
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                userDetails.getAdmin());
+        response.setRefreshToken(rotation.getToken());
+
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
+            return CompletableFuture.completedFuture(ResponseEntity
                     .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+                    .body(new MessageResponse("Error: Email is already taken!")));
         }
 
+        return onPasswordHashingExecutor(() -> register(signUpRequest));
+    }
+
+    private ResponseEntity<?> register(SignupRequest signUpRequest) {
         // Create new user's account
         User user = new User(signUpRequest.getEmail(),
                 signUpRequest.getLastName(),
@@ -85,4 +149,41 @@ public class AuthController {
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logoutUser(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        JwtVerification verification = authorization != null && authorization.startsWith("Bearer ")
+                ? jwtUtils.verifyJwtToken(authorization.substring(7))
+                : null;
+
+        if (verification == null || !verification.isValid() || verification.getId() == null) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: No revocable token provided!"));
+        }
+
+        tokenDenylist.revoke(verification.getId(), verification.getExpiration());
+
+        // without this, a refresh token from any login would keep minting access tokens
+        UserDetailsImpl principal = jwtUtils.getPrincipalFromClaims(verification);
+        Long userId = principal != null
+                ? principal.getId()
+                : userRepository.findByEmail(verification.getSubject()).map(User::getId).orElse(null);
+        if (userId != null) {
+            refreshTokenService.revokeAll(userId);
+        }
+
+        return ResponseEntity.ok(new MessageResponse("Logged out successfully!"));
+    }
+
+    private CompletableFuture<ResponseEntity<?>> onPasswordHashingExecutor(Supplier<ResponseEntity<?>> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new MessageResponse("Error: Too many authentication requests, please retry!")));
+        }
+    }
 }
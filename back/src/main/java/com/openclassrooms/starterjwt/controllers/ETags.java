@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Strong validators built from what the services already hold in memory, so that a matching
+ * If-None-Match is answered before anything is loaded, mapped or serialized.
+ */
+final class ETags {
+    private ETags() {
+    }
+
+    static String of(String tag) {
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * @param key the number of rows, or the id of a single row
+     * @return a validator that changes whenever a row is added, removed or updated
+     */
+    static String of(long key, LocalDateTime lastUpdated) {
+        if (lastUpdated == null) {
+            return of(Long.toString(key));
+        }
+        return of(key + "-" + lastUpdated.toEpochSecond(ZoneOffset.UTC) + "." + lastUpdated.getNano());
+    }
+
+    /**
+     * Call once {@link org.springframework.web.context.request.WebRequest#checkNotModified(String)} matched.
+     */
+    static <T> ResponseEntity<T> notModified(String etag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.controllers;
+
+/**
+ * Parses path ids without using exceptions for flow control: malformed ids are
+ * routine bot traffic and a {@link NumberFormatException} costs a stack trace each.
+ */
+final class Ids {
+    private static final int MAX_DIGITS = 19;
+
+    private Ids() {
+    }
+
+    /**
+     * @return the id, or null when the value is not a decimal long, same as {@link Long#valueOf(String)}
+     */
+    static Long parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i = 1;
+        }
+        int digits = value.length() - i;
+        if (digits == 0 || digits > MAX_DIGITS) {
+            return null;
+        }
+
+        // accumulate negatively like Long.parseLong so that Long.MIN_VALUE fits
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < value.length(); i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            if (result < (limit + digit) / 10) {
+                return null;
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+}
@@ -1,52 +1,206 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.starterjwt.dto.BatchEnrollmentDto;
+import com.openclassrooms.starterjwt.dto.PageDto;
+import com.openclassrooms.starterjwt.dto.ParticipantDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.services.Participation;
+import com.openclassrooms.starterjwt.services.SessionCursor;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    // sessions change with every booking: clients keep them but revalidate on each use
+    static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final ObjectMapper objectMapper;
+    private final int maxRangeDays;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             ObjectMapper objectMapper,
+                             @Value("${oc.app.sessionRange.maxDays:62}") int maxRangeDays) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.objectMapper = objectMapper;
+        this.maxRangeDays = maxRangeDays;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+    public ResponseEntity<?> findById(@PathVariable("id") String id,
+                                      @RequestParam(value = "compact", defaultValue = "false") boolean compact,
+                                      WebRequest request) {
+        Long sessionId = Ids.parse(id);
+        if (sessionId == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
-            }
+        String etag = ETags.of(this.sessionService.getDataTag());
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        SessionDto session = this.sessionService.findDtoById(sessionId);
+
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL)
+                .body(compact ? this.sessionMapper.toCompactDto(session) : session);
+    }
+
+    @GetMapping("/{id}/participants")
+    public ResponseEntity<?> findParticipants(@PathVariable("id") String id,
+                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "size", required = false) Integer size) {
+        Long sessionId = Ids.parse(id);
+        Long after = cursor == null ? null : Ids.parse(cursor);
+        if (sessionId == null || (cursor != null && after == null) || (size != null && size < 1)) {
             return ResponseEntity.badRequest().build();
         }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+
+        List<ParticipantDto> participants = this.sessionService.findParticipants(sessionId, after, pageSize + 1);
+        String next = null;
+        if (participants.size() > pageSize) {
+            participants = participants.subList(0, pageSize);
+            next = String.valueOf(participants.get(pageSize - 1).getId());
+        }
+
+        return ResponseEntity.ok().body(new PageDto<>(participants, next));
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged,
+                                     @RequestParam(value = "compact", defaultValue = "false") boolean compact,
+                                     WebRequest request) {
+        // every representation of the listing changes together, one tag covers them all
+        String etag = ETags.of(this.sessionService.getDataTag());
+        if (unpaged) {
+            if (request.checkNotModified(etag)) {
+                return ETags.notModified(etag, CACHE_CONTROL);
+            }
+
+            List<SessionDto> sessions = this.sessionService.findAllDtos();
+
+            return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL)
+                    .body(compact ? toCompactDtos(sessions) : sessions);
+        }
+
+        SessionCursor after = null;
+        if (cursor != null) {
+            after = SessionCursor.decode(cursor);
+            if (after == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (size != null && size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        // one extra row tells whether there is a next page
+        List<SessionDto> sessions = this.sessionService.findDtoPage(after, pageSize + 1);
+        String next = null;
+        if (sessions.size() > pageSize) {
+            sessions = sessions.subList(0, pageSize);
+            next = SessionCursor.of(sessions.get(pageSize - 1)).encode();
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL)
+                .body(new PageDto<>(compact ? toCompactDtos(sessions) : sessions, next));
+    }
+
+    /**
+     * Sessions dated from {@code from} to {@code to}, both inclusive ISO days in the server's time zone. Windows
+     * longer than {@code oc.app.sessionRange.maxDays} are refused, so the cost follows the window, not the table.
+     */
+    @GetMapping(params = "from")
+    public ResponseEntity<?> findInRange(@RequestParam("from") String from,
+                                         @RequestParam("to") String to,
+                                         @RequestParam(value = "teacherId", required = false) String teacherId,
+                                         @RequestParam(value = "compact", defaultValue = "false") boolean compact,
+                                         WebRequest request) {
+        LocalDate first = parseDate(from);
+        LocalDate last = parseDate(to);
+        Long teacher = teacherId == null ? null : Ids.parse(teacherId);
+        if (first == null || last == null || last.isBefore(first)
+                || ChronoUnit.DAYS.between(first, last) >= this.maxRangeDays
+                || (teacherId != null && teacher == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String etag = ETags.of(this.sessionService.getDataTag());
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        List<SessionDto> sessions = this.sessionService.findDtosInRange(
+                Date.from(first.atStartOfDay(zone).toInstant()),
+                Date.from(last.plusDays(1).atStartOfDay(zone).toInstant()),
+                teacher);
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL)
+                .body(compact ? toCompactDtos(sessions) : sessions);
+    }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+    /**
+     * The full listing, same as {@code unpaged=true}, written to the response as it is read from the database.
+     */
+    @GetMapping(params = {"stream=true", "!from"})
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(value = "compact", defaultValue = "false") boolean compact,
+                                                           WebRequest request) {
+        String etag = ETags.of(this.sessionService.getDataTag());
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(etag).cacheControl(CACHE_CONTROL)
+                .body(out -> writeAll(out, !compact));
     }
 
     @PostMapping()
@@ -61,50 +215,115 @@ public class SessionController {
 
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
-        try {
-            Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
+        Long sessionId = Ids.parse(id);
+        if (sessionId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Session session = this.sessionService.update(sessionId, this.sessionMapper.toEntity(sessionDto));
+
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+    }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
+    @PatchMapping("{id}")
+    public ResponseEntity<?> patch(@PathVariable("id") String id, @Valid @RequestBody SessionPatchDto sessionPatchDto) {
+        Long sessionId = Ids.parse(id);
+        if (sessionId == null) {
             return ResponseEntity.badRequest().build();
         }
+
+        Session session = this.sessionService.patch(sessionId, sessionPatchDto);
+        List<Long> userIds = this.sessionService.findParticipantIds(Collections.singletonList(sessionId))
+                .getOrDefault(sessionId, Collections.emptyList());
+
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(session, userIds));
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+        Long sessionId = Ids.parse(id);
+        if (sessionId == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
-            }
+        Session session = this.sessionService.getById(sessionId);
 
-            this.sessionService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (session == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        this.sessionService.delete(sessionId);
+        return ResponseEntity.ok().build();
     }
 
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+        Long sessionId = Ids.parse(id);
+        Long participantId = Ids.parse(userId);
+        if (sessionId == null || participantId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Participation participation = this.sessionService.participate(sessionId, participantId);
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
+        if (participation == Participation.WAITLISTED) {
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("{id}/participants:batch")
+    public ResponseEntity<?> enroll(@PathVariable("id") String id, @Valid @RequestBody BatchEnrollmentDto batchEnrollmentDto) {
+        Long sessionId = Ids.parse(id);
+        if (sessionId == null) {
             return ResponseEntity.badRequest().build();
         }
+
+        return ResponseEntity.ok().body(this.sessionService.enroll(sessionId, batchEnrollmentDto.getUserIds()));
     }
 
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        Long sessionId = Ids.parse(id);
+        Long participantId = Ids.parse(userId);
+        if (sessionId == null || participantId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        this.sessionService.noLongerParticipate(sessionId, participantId);
+
+        return ResponseEntity.ok().build();
+    }
+
+    // null when not an ISO yyyy-MM-dd day
+    private static LocalDate parseDate(String value) {
         try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+    private void writeAll(OutputStream out, boolean withUsers) throws IOException {
+        ObjectWriter writer = this.objectMapper.writerFor(SessionDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(out)) {
+            // the servlet container owns the stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            this.sessionService.forEachDto(withUsers, session -> {
+                try {
+                    writer.writeValue(generator, session);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
         }
     }
+
+    // compact responses carry participantCount instead of the participant id list
+    private List<SessionDto> toCompactDtos(List<SessionDto> sessions) {
+        return sessions.stream().map(this.sessionMapper::toCompactDto).collect(Collectors.toList());
+    }
 }
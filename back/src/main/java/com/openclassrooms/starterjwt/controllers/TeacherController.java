@@ -3,14 +3,22 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/teacher")
 public class TeacherController {
+    // teachers rarely change and are served from a cache with a longer TTL anyway
+    static final CacheControl CACHE_CONTROL = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePrivate();
+
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
 
@@ -22,24 +30,41 @@ public class TeacherController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
+        Long teacherId = Ids.parse(id);
+        if (teacherId == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (teacher == null) {
-                return ResponseEntity.notFound().build();
-            }
+        Teacher teacher = this.teacherService.findById(teacherId);
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (teacher == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        String etag = ETags.of(teacher.getId(), teacher.getUpdatedAt());
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL).body(this.teacherMapper.toDto(teacher));
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(WebRequest request) {
         List<Teacher> teachers = this.teacherService.findAll();
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        LocalDateTime lastUpdated = null;
+        for (Teacher teacher : teachers) {
+            if (lastUpdated == null || (teacher.getUpdatedAt() != null && teacher.getUpdatedAt().isAfter(lastUpdated))) {
+                lastUpdated = teacher.getUpdatedAt();
+            }
+        }
+        String etag = ETags.of(teachers.size(), lastUpdated);
+        if (request.checkNotModified(etag)) {
+            return ETags.notModified(etag, CACHE_CONTROL);
+        }
+
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL).body(this.teacherMapper.toDto(teachers));
     }
 }
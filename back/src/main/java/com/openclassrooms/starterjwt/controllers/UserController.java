@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,38 +28,49 @@ public class UserController {
 
     @GetMapping("/{id}")
     public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+        Long userId = Ids.parse(id);
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+        User user = this.userService.findById(userId);
 
-            return ResponseEntity.ok().body(this.userMapper.toDto(user));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if (user == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        return ResponseEntity.ok().body(this.userMapper.toDto(user));
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+        Long userId = Ids.parse(id);
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+        User user = this.userService.findById(userId);
 
-            UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-            if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
+        UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-            this.userService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
+        if(!isOwner(userDetails, user)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        this.userService.delete(userId);
+        return ResponseEntity.ok().build();
+    }
+
+    private boolean isOwner(UserDetails userDetails, User user) {
+        // a principal rebuilt from token claims carries its id, no need to rely on the email
+        if (userDetails instanceof UserDetailsImpl && ((UserDetailsImpl) userDetails).getId() != null) {
+            return Objects.equals(((UserDetailsImpl) userDetails).getId(), user.getId());
         }
+
+        return Objects.equals(userDetails.getUsername(), user.getEmail());
     }
 }
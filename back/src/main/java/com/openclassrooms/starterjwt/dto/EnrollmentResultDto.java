@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.openclassrooms.starterjwt.services.Enrollment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrollmentResultDto {
+    private Long userId;
+
+    private Enrollment status;
+}
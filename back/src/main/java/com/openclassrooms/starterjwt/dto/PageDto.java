@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDto<T> {
+    private List<T> items;
+
+    // opaque cursor for the following page, null on the last one
+    private String next;
+}
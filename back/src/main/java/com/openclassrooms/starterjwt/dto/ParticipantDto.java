@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipantDto {
+    private Long id;
+
+    private String firstName;
+
+    private String lastName;
+}
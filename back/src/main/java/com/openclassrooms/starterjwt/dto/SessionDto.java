@@ -1,9 +1,12 @@
 package com.openclassrooms.starterjwt.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -31,8 +34,17 @@ public class SessionDto {
     @Size(max = 2500)
     private String description;
 
+    // null means unlimited
+    @Min(1)
+    private Integer capacity;
+
+    // left out of compact responses, see participantCount
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Long> users;
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer participantCount;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
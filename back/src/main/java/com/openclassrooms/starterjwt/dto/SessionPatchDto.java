@@ -0,0 +1,41 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.util.Date;
+
+/**
+ * Changes to a session: absent fields are left as they are. Participants are not part of it, they change
+ * through the participation endpoints.
+ */
+@Data
+@NoArgsConstructor
+public class SessionPatchDto {
+    @Size(max = 50)
+    @Pattern(regexp = "(?s).*\\S.*", message = "must not be blank")
+    private String name;
+
+    private Date date;
+
+    private Long teacher_id;
+
+    @Size(max = 2500)
+    private String description;
+
+    // the only nullable field: an explicit null makes the session unlimited
+    @Min(1)
+    private Integer capacity;
+
+    @JsonIgnore
+    private boolean capacityPresent;
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+        this.capacityPresent = true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.exception;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers domain exceptions with a pre-serialized body instead of going through
+ * the servlet container's error page dispatch.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    private static final ErrorBodyTemplate BAD_REQUEST = new ErrorBodyTemplate(HttpStatus.BAD_REQUEST);
+    private static final ErrorBodyTemplate NOT_FOUND = new ErrorBodyTemplate(HttpStatus.NOT_FOUND);
+
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<byte[]> handleBadRequest() {
+        return fixed(BAD_REQUEST);
+    }
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<byte[]> handleNotFound() {
+        return fixed(NOT_FOUND);
+    }
+
+    @ExceptionHandler(UnknownIdsException.class)
+    public ResponseEntity<Map<String, Object>> handleUnknownIds(UnknownIdsException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", HttpStatus.BAD_REQUEST.value());
+        body.put("error", HttpStatus.BAD_REQUEST.getReasonPhrase());
+        body.put("unknownTeacherIds", e.getTeacherIds());
+        body.put("unknownUserIds", e.getUserIds());
+        return ResponseEntity.badRequest().body(body);
+    }
+
+    private static ResponseEntity<byte[]> fixed(ErrorBodyTemplate template) {
+        return ResponseEntity.status(template.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(template.fixedBody());
+    }
+}
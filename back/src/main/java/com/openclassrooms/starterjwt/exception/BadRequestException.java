@@ -5,4 +5,8 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(value= HttpStatus.BAD_REQUEST)
 public class BadRequestException extends RuntimeException {
+    // thrown for expected client errors, the stack trace would never be read
+    public BadRequestException() {
+        super(null, null, false, false);
+    }
 }
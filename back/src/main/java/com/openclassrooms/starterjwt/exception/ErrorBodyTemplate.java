@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.exception;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * JSON error bodies built from bytes serialized once per status, so that writing an
+ * error allocates little more than the escaped message and path.
+ */
+public final class ErrorBodyTemplate {
+    private static final byte[] MESSAGE = utf8(",\"message\":");
+    private static final byte[] PATH = utf8(",\"path\":");
+    private static final byte[] NULL = utf8("null");
+    private static final byte QUOTE = '"';
+    private static final byte END = '}';
+
+    private final HttpStatus status;
+
+    private final byte[] head;
+
+    private final byte[] fixed;
+
+    public ErrorBodyTemplate(HttpStatus status) {
+        this.status = status;
+        this.head = utf8("{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase() + "\"");
+        this.fixed = utf8("{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase() + "\"}");
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return {"status":...,"error":"..."}, shared: do not modify
+     */
+    public byte[] fixedBody() {
+        return fixed;
+    }
+
+    /**
+     * Writes {"status":...,"error":"...","message":"...","path":"..."}.
+     */
+    public void write(OutputStream out, String message, String path) throws IOException {
+        out.write(head);
+        out.write(MESSAGE);
+        writeString(out, message);
+        out.write(PATH);
+        writeString(out, path);
+        out.write(END);
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write(QUOTE);
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write(QUOTE);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
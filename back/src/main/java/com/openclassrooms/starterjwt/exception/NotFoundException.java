@@ -5,4 +5,8 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(value= HttpStatus.NOT_FOUND)
 public class NotFoundException extends RuntimeException {
+    // thrown for expected client errors, the stack trace would never be read
+    public NotFoundException() {
+        super(null, null, false, false);
+    }
 }
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.exception;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request referenced teachers or users that do not exist.
+ */
+public class UnknownIdsException extends RuntimeException {
+    private final List<Long> teacherIds;
+
+    private final List<Long> userIds;
+
+    public UnknownIdsException(Collection<Long> teacherIds, Collection<Long> userIds) {
+        super(null, null, false, false);
+        this.teacherIds = Collections.unmodifiableList(new ArrayList<>(teacherIds));
+        this.userIds = Collections.unmodifiableList(new ArrayList<>(userIds));
+    }
+
+    public List<Long> getTeacherIds() {
+        return teacherIds;
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+}
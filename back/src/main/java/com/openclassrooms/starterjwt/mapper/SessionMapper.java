@@ -1,19 +1,28 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -25,18 +34,104 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Autowired
     UserService userService;
 
+    public Session toEntity(SessionDto sessionDto) {
+        return toEntity(Collections.singletonList(sessionDto)).get(0);
+    }
+
+    /**
+     * Resolves the teachers and users of every DTO with one lookup per type.
+     *
+     * @throws UnknownIdsException when any referenced teacher or user does not exist
+     */
+    public List<Session> toEntity(List<SessionDto> sessionDtos) {
+        Set<Long> teacherIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (SessionDto sessionDto : sessionDtos) {
+            if (sessionDto.getTeacher_id() != null) {
+                teacherIds.add(sessionDto.getTeacher_id());
+            }
+            if (sessionDto.getUsers() != null) {
+                userIds.addAll(sessionDto.getUsers());
+            }
+        }
+        userIds.remove(null);
+
+        Map<Long, Teacher> teachers = teacherIds.isEmpty() ? Collections.emptyMap()
+                : this.teacherService.findAllById(teacherIds).stream().collect(Collectors.toMap(Teacher::getId, t -> t));
+        Map<Long, User> users = userIds.isEmpty() ? Collections.emptyMap()
+                : this.userService.findAllById(userIds).stream().collect(Collectors.toMap(User::getId, u -> u));
+
+        teacherIds.removeAll(teachers.keySet());
+        userIds.removeAll(users.keySet());
+        if (!teacherIds.isEmpty() || !userIds.isEmpty()) {
+            throw new UnknownIdsException(teacherIds, userIds);
+        }
+
+        List<Session> sessions = new ArrayList<>(sessionDtos.size());
+        for (SessionDto sessionDto : sessionDtos) {
+            Session session = toEntityWithoutReferences(sessionDto);
+            session.setTeacher(sessionDto.getTeacher_id() != null ? teachers.get(sessionDto.getTeacher_id()) : null);
+            // a user listed twice would break the PARTICIPATE unique key
+            session.setUsers(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .map(users::get)
+                    .collect(Collectors.toList()));
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    @Named("withoutReferences")
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "teacher", ignore = true),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "bookedSeats", ignore = true),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
-
+    abstract Session toEntityWithoutReferences(SessionDto sessionDto);
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
+            @Mapping(target = "participantCount", expression = "java(session.getUsers() != null ? session.getUsers().size() : 0)"),
     })
     public abstract SessionDto toDto(Session session);
+
+    /**
+     * Maps sessions whose participants were not loaded, taking their ids from {@code participantIds}.
+     */
+    public List<SessionDto> toDto(List<Session> sessions, Map<Long, List<Long>> participantIds) {
+        List<SessionDto> dtos = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            dtos.add(toDto(session, participantIds.getOrDefault(session.getId(), Collections.emptyList())));
+        }
+        return dtos;
+    }
+
+    public SessionDto toDto(Session session, List<Long> userIds) {
+        SessionDto sessionDto = toDtoWithoutUsers(session);
+        sessionDto.setUsers(new ArrayList<>(userIds));
+        sessionDto.setParticipantCount(userIds.size());
+        return sessionDto;
+    }
+
+    /**
+     * @return a copy of {@code sessionDto} without its participant ids, only their count
+     */
+    public SessionDto toCompactDto(SessionDto sessionDto) {
+        return new SessionDto(sessionDto.getId(), sessionDto.getName(), sessionDto.getDate(),
+                sessionDto.getTeacher_id(), sessionDto.getDescription(), sessionDto.getCapacity(), null,
+                sessionDto.getParticipantCount(), sessionDto.getCreatedAt(), sessionDto.getUpdatedAt());
+    }
+
+    @Named("withoutUsers")
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "participantCount", ignore = true),
+    })
+    abstract SessionDto toDtoWithoutUsers(Session session);
 }
@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+@Entity
+@Table(name = "REFRESH_TOKENS", uniqueConstraints = {
+    @UniqueConstraint(columnNames = "token_hash")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Size(max = 64)
+    @Column(name = "token_hash")
+    private String tokenHash;
+
+    @NotNull
+    @Column(name = "user_id")
+    private Long userId;
+
+    // every token rotated out of the same login shares a family
+    @NotNull
+    @Size(max = 36)
+    private String family;
+
+    @NotNull
+    @Column(name = "expires_at")
+    private Date expiresAt;
+
+    private boolean used;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
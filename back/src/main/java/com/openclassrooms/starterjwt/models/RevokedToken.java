@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.Date;
+
+@Entity
+@Table(name = "REVOKED_TOKENS")
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"jti"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class RevokedToken {
+    @Id
+    @Size(max = 36)
+    private String jti;
+
+    @NotNull
+    @Column(name = "expires_at")
+    private Date expiresAt;
+}
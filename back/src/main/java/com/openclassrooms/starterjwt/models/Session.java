@@ -3,11 +3,14 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,8 +19,14 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+        // keyset pages and calendar ranges, in listing order
+        @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+        @Index(name = "idx_sessions_teacher_date", columnList = "teacher_id, date")
+})
 @EntityListeners(AuditingEntityListener.class)
+// partial updates only write the columns they change
+@DynamicUpdate
 @Data
 @Accessors(chain = true)
 @EqualsAndHashCode(of = {"id"})
@@ -41,15 +50,25 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    // null means unlimited
+    @Min(1)
+    private Integer capacity;
+
+    // only written by SessionRepository's conditional updates, never through the entity
+    @ColumnDefault("0")
+    @Column(name = "booked_seats", nullable = false, insertable = false, updatable = false)
+    private int bookedSeats;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(name = "uk_participate_session_user", columnNames = {"session_id", "user_id"}) )
     private List<User> users;
 
     @CreatedDate
@@ -0,0 +1,41 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Bulk join-table writes. They go through JDBC batches, which JPA cannot issue for PARTICIPATE since it is
+ * not an entity, and which would otherwise mean one identity round trip per WAITLIST row.
+ */
+@Repository
+public class EnrollmentJdbcRepository {
+    static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EnrollmentJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertParticipants(Long sessionId, List<Long> userIds) {
+        this.jdbcTemplate.batchUpdate("insert into PARTICIPATE (session_id, user_id) values (?, ?)",
+                userIds, BATCH_SIZE, (statement, userId) -> {
+                    statement.setLong(1, sessionId);
+                    statement.setLong(2, userId);
+                });
+    }
+
+    // one timestamp for the whole batch, the queue order comes from the ids
+    public void insertWaitlistEntries(Long sessionId, List<Long> userIds) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        this.jdbcTemplate.batchUpdate("insert into WAITLIST (session_id, user_id, created_at) values (?, ?, ?)",
+                userIds, BATCH_SIZE, (statement, userId) -> {
+                    statement.setLong(1, sessionId);
+                    statement.setLong(2, userId);
+                    statement.setTimestamp(3, now);
+                });
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken r set r.used = true where r.id = :id and r.used = false")
+    int markUsed(@Param("id") Long id);
+
+    @Transactional
+    long deleteByFamily(String family);
+
+    @Transactional
+    long deleteByUserId(Long userId);
+
+    @Transactional
+    long deleteByExpiresAtBefore(Date date);
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Reads the whole session listing through a forward-only JDBC cursor, one session at a time, so that nothing
+ * but the session being read is held in memory whatever the table size. MySQL Connector/J only streams rows
+ * for a fetch size of {@link Integer#MIN_VALUE}, which is what the application configures; since that is set on
+ * this repository's own template, every other statement keeps the driver's defaults.
+ */
+@Repository
+public class SessionJdbcRepository {
+    private static final String SELECT_ALL = "select s.id, s.name, s.date, s.teacher_id, s.description, s.capacity, "
+            + "s.created_at, s.updated_at, p.user_id from SESSIONS s "
+            + "left join PARTICIPATE p on p.session_id = s.id "
+            + "order by s.date asc, s.id asc, p.user_id asc";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionJdbcRepository(DataSource dataSource, @Value("${oc.app.sessionStream.fetchSize:500}") int fetchSize) {
+        // a template of its own, the shared one must keep the driver's default fetch size
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Hands every session to {@code consumer} in (date, id) order, with its participant ids when
+     * {@code withUsers}, its participant count only otherwise.
+     */
+    public void forEach(boolean withUsers, Consumer<SessionDto> consumer) {
+        SessionRows rows = new SessionRows(withUsers, consumer);
+        this.jdbcTemplate.query(SELECT_ALL, rows);
+        rows.flush();
+    }
+
+    private static SessionDto read(ResultSet rs, boolean withUsers) throws SQLException {
+        SessionDto session = new SessionDto();
+        session.setId(rs.getLong("id"));
+        session.setName(rs.getString("name"));
+        Timestamp date = rs.getTimestamp("date");
+        session.setDate(date == null ? null : new Date(date.getTime()));
+        long teacherId = rs.getLong("teacher_id");
+        session.setTeacher_id(rs.wasNull() ? null : teacherId);
+        session.setDescription(rs.getString("description"));
+        int capacity = rs.getInt("capacity");
+        session.setCapacity(rs.wasNull() ? null : capacity);
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        session.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        session.setUpdatedAt(updatedAt == null ? null : updatedAt.toLocalDateTime());
+        if (withUsers) {
+            session.setUsers(new ArrayList<>());
+        }
+        return session;
+    }
+
+    // rows of a session are adjacent, one per participant; a session is handed over once its last row is read
+    private static final class SessionRows implements RowCallbackHandler {
+        private final boolean withUsers;
+        private final Consumer<SessionDto> consumer;
+        private SessionDto current;
+        private int participants;
+
+        private SessionRows(boolean withUsers, Consumer<SessionDto> consumer) {
+            this.withUsers = withUsers;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (current == null || current.getId() != id) {
+                flush();
+                current = read(rs, withUsers);
+            }
+            long userId = rs.getLong("user_id");
+            if (!rs.wasNull()) {
+                participants++;
+                if (withUsers) {
+                    current.getUsers().add(userId);
+                }
+            }
+        }
+
+        private void flush() {
+            if (current != null) {
+                current.setParticipantCount(participants);
+                consumer.accept(current);
+                current = null;
+                participants = 0;
+            }
+        }
+    }
+}
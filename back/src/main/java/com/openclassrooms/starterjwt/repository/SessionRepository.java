@@ -1,9 +1,121 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.ParticipantDto;
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    @Override
+    @Query("select s from Session s left join fetch s.teacher order by s.date asc, s.id asc")
+    List<Session> findAll();
+
+    @Query("select s from Session s left join fetch s.teacher where s.id = :id")
+    Optional<Session> findWithTeacherById(@Param("id") Long id);
+
+    // pages select ids first so the page query itself stays a plain index seek
+    @Query("select s.id from Session s order by s.date asc, s.id asc")
+    List<Long> findFirstPageIds(Pageable pageable);
+
+    @Query("select s.id from Session s where s.date > :date or (s.date = :date and s.id > :id) order by s.date asc, s.id asc")
+    List<Long> findPageIdsAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    @Query("select s from Session s left join fetch s.teacher where s.id in :ids order by s.date asc, s.id asc")
+    List<Session> findAllWithTeacherByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Sessions dated in [from, to), ranged over idx_sessions_date_id.
+     */
+    @Query("select s from Session s left join fetch s.teacher where s.date >= :from and s.date < :to order by s.date asc, s.id asc")
+    List<Session> findInRange(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * Sessions of one teacher dated in [from, to), ranged over idx_sessions_teacher_date.
+     */
+    @Query("select s from Session s left join fetch s.teacher t where t.id = :teacherId and s.date >= :from and s.date < :to "
+            + "order by s.date asc, s.id asc")
+    List<Session> findInRangeByTeacher(@Param("teacherId") Long teacherId, @Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * (session_id, user_id) rows straight from the join table, without touching USERS.
+     */
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:ids)", nativeQuery = true)
+    List<Object[]> findParticipantRows(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Every (session_id, user_id) row, for full listings: no id list to bind whatever the table size.
+     */
+    @Query(value = "select session_id, user_id from PARTICIPATE", nativeQuery = true)
+    List<Object[]> findAllParticipantRows();
+
+    @Query("select new com.openclassrooms.starterjwt.dto.ParticipantDto(u.id, u.firstName, u.lastName) "
+            + "from Session s join s.users u where s.id = :id and u.id > :after order by u.id asc")
+    List<ParticipantDto> findParticipantsAfter(@Param("id") Long id, @Param("after") Long after, Pageable pageable);
+
+    /**
+     * @return 1 when the row was added, 0 when the session or user is unknown or the user already participates
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s, USERS u where s.id = :id and u.id = :userId "
+            + "and not exists (select 1 from PARTICIPATE p where p.session_id = :id and p.user_id = :userId)", nativeQuery = true)
+    int addParticipant(@Param("id") Long id, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from PARTICIPATE where session_id = :id and user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Takes a seat when one is left. The update row-locks the session until the transaction ends, which
+     * serializes bookings per session.
+     *
+     * @return 1 when a seat was taken, 0 when the session is full or unknown
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update SESSIONS set booked_seats = booked_seats + 1 "
+            + "where id = :id and (capacity is null or booked_seats < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update SESSIONS set booked_seats = booked_seats - 1 where id = :id and booked_seats > 0", nativeQuery = true)
+    int releaseSeat(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update SESSIONS set booked_seats = (select count(*) from PARTICIPATE where session_id = :id) "
+            + "where id = :id", nativeQuery = true)
+    int syncBookedSeats(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s.id from Session s where s.id = :id")
+    Optional<Long> lockById(@Param("id") Long id);
+
+    // null when the capacity is unlimited
+    @Query("select s.capacity - s.bookedSeats from Session s where s.id = :id")
+    Integer findSeatsLeft(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update SESSIONS set booked_seats = booked_seats + :seats where id = :id", nativeQuery = true)
+    int addBookedSeats(@Param("id") Long id, @Param("seats") int seats);
+
+    @Query(value = "select user_id from PARTICIPATE where session_id = :id and user_id in (:userIds)", nativeQuery = true)
+    List<Number> findParticipatingUserIds(@Param("id") Long id, @Param("userIds") Collection<Long> userIds);
 }
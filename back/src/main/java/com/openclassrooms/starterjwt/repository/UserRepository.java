@@ -1,9 +1,15 @@
 package com.openclassrooms.starterjwt.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
 
@@ -12,4 +18,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  @Transactional
+  @Modifying
+  @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+  int updatePassword(@Param("id") Long id, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
+
+  @Query("select u.id from User u where u.id in :ids")
+  List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,49 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+    Optional<WaitlistEntry> findFirstBySessionIdOrderByIdAsc(Long sessionId);
+
+    long countBySessionId(Long sessionId);
+
+    /**
+     * @return 1 when queued, 0 when the user is unknown, already participates or is already queued
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into WAITLIST (session_id, user_id, created_at) "
+            + "select :sessionId, u.id, current_timestamp from USERS u where u.id = :userId "
+            + "and not exists (select 1 from PARTICIPATE p where p.session_id = :sessionId and p.user_id = :userId) "
+            + "and not exists (select 1 from WAITLIST w where w.session_id = :sessionId and w.user_id = :userId)", nativeQuery = true)
+    int enqueue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.sessionId = :sessionId and w.userId = :userId")
+    int dequeue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.sessionId = :sessionId")
+    int clear(@Param("sessionId") Long sessionId);
+
+    @Query("select w.userId from WaitlistEntry w where w.sessionId = :sessionId and w.userId in :userIds")
+    List<Long> findWaitingUserIds(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+}
@@ -1,8 +1,14 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -16,6 +22,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimitFilter;
+import com.openclassrooms.starterjwt.security.services.BCryptCost;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -25,17 +33,28 @@ import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
     // jsr250Enabled = true,
     prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+  // also skipped by AuthTokenFilter, keep every entry a prefix ending in /**
+  public static final String[] PUBLIC_ROUTES = {"/api/auth/**"};
+
   @Autowired
   UserDetailsServiceImpl userDetailsService;
 
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private BCryptCost bCryptCost;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
   }
 
+  @Bean
+  public AuthRateLimitFilter authRateLimitFilter() {
+    return new AuthRateLimitFilter();
+  }
+
   @Override
   public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
     authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
@@ -49,7 +68,29 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    return new BCryptPasswordEncoder(bCryptCost.getCost());
+  }
+
+  // BCrypt is CPU bound: keep it off the request threads and shed load once the queue is full
+  @Bean
+  public ThreadPoolTaskExecutor passwordHashingExecutor(
+      @Value("${oc.app.passwordHashing.poolSize:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+      @Value("${oc.app.passwordHashing.queueCapacity:100}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("password-hashing-");
+    return executor;
+  }
+
+  // the executor above switches off Boot's own, which MVC async (streamed responses) runs on;
+  // without it every stream gets a fresh SimpleAsyncTaskExecutor thread
+  @Lazy
+  @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+      AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+  public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+    return builder.build();
   }
 
   @Override
@@ -57,10 +98,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     http.cors().and().csrf().disable()
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
-      .authorizeRequests().antMatchers("/api/auth/**").permitAll()
+      .authorizeRequests().antMatchers(PUBLIC_ROUTES).permitAll()
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
+    http.addFilterBefore(authRateLimitFilter(), UsernamePasswordAuthenticationFilter.class);
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
   }
 }
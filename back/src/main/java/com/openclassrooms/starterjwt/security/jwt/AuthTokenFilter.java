@@ -17,34 +17,73 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.WebSecurityConfig;
+import com.openclassrooms.starterjwt.security.services.PrincipalCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
+  private static final String[] PUBLIC_PREFIXES = toPrefixes(WebSecurityConfig.PUBLIC_ROUTES);
+
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private PrincipalCache principalCache;
+
+  @Autowired
+  private TokenDenylist tokenDenylist;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+  // permit-all routes and CORS preflights never need a principal
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if ("OPTIONS".equals(request.getMethod())) {
+      return true;
+    }
+    String path = request.getServletPath();
+    if (path == null) {
+      return false;
+    }
+    for (String prefix : PUBLIC_PREFIXES) {
+      if (path.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        UsernamePasswordAuthenticationToken authentication =
-            new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+      JwtVerification verification = jwt != null ? jwtUtils.verifyJwtToken(jwt) : null;
+      if (verification != null && verification.isValid() && !tokenDenylist.isRevoked(verification.getId())) {
+        String username = verification.getSubject();
+
+        UserDetails userDetails;
+        UserDetailsImpl claimed = jwtUtils.getPrincipalFromClaims(verification);
+        if (claimed == null) {
+          userDetails = principalCache.get(username, userDetailsService::loadUserByUsername);
+        } else {
+          // claims outlive the user row, a deleted user is revoked by id
+          userDetails = tokenDenylist.isUserRevoked(claimed.getId()) ? null : claimed;
+        }
+        if (userDetails != null) {
+          UsernamePasswordAuthenticationToken authentication =
+              new UsernamePasswordAuthenticationToken(
+                  userDetails,
+                  null,
+                  userDetails.getAuthorities());
+          authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+          SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
       }
     } catch (Exception e) {
       logger.error("Cannot set user authentication: {}", e);
@@ -62,4 +101,17 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
     return null;
   }
+
+  private static String[] toPrefixes(String[] patterns) {
+    String[] prefixes = new String[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      String pattern = patterns[i];
+      if (!pattern.endsWith("/**")) {
+        throw new IllegalStateException("Unsupported public route pattern: " + pattern);
+      }
+      // "/api/auth/**" -> "/api/auth/"
+      prefixes[i] = pattern.substring(0, pattern.length() - 2);
+    }
+    return prefixes;
+  }
 }
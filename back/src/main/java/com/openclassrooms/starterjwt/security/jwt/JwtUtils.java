@@ -1,9 +1,12 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
+import java.util.UUID;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -11,49 +14,93 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
-  private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+  private static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
 
-  @Value("${oc.app.jwtSecret}")
-  private String jwtSecret;
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
 
-  @Value("${oc.app.jwtExpirationMs}")
-  private int jwtExpirationMs;
+  private final Key signingKey;
 
-  public String generateJwtToken(Authentication authentication) {
+  private final int jwtExpirationMs;
+
+  private final JwtVerifier verifier;
+
+  // when set, tokens carry the principal so the filter needs no database lookup
+  private final boolean selfContained;
+
+  public JwtUtils(String jwtSecret, int jwtExpirationMs) {
+    this(jwtSecret, jwtExpirationMs, false);
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  @Autowired
+  public JwtUtils(@Value("${oc.app.jwtSecret}") String jwtSecret,
+      @Value("${oc.app.jwtExpirationMs}") int jwtExpirationMs,
+      @Value("${oc.app.jwtSelfContained:false}") boolean selfContained) {
+    // jjwt treats a String secret as base64, keep the same key bytes as before
+    this.signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SIGNATURE_ALGORITHM.getJcaName());
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.verifier = new JwtVerifier(signingKey);
+    this.selfContained = selfContained;
+  }
+
+  public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    return Jwts.builder()
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    JwtBuilder builder = Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
+        .setId(UUID.randomUUID().toString())
         .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs));
+
+    if (selfContained) {
+      builder.claim(CLAIM_ID, userPrincipal.getId())
+          .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+          .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+          .claim(CLAIM_ADMIN, Boolean.TRUE.equals(userPrincipal.getAdmin()));
+    }
+
+    return builder.signWith(SIGNATURE_ALGORITHM, signingKey).compact();
+  }
+
+  public UserDetailsImpl getPrincipalFromClaims(JwtVerification verification) {
+    if (!selfContained || !verification.isValid()) {
+      return null;
+    }
+
+    Claims claims = verification.getClaims();
+    Number id = claims.get(CLAIM_ID, Number.class);
+    if (id == null) {
+      // issued before self-contained mode was switched on
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(id.longValue())
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
+  }
+
+  public JwtVerification verifyJwtToken(String token) {
+    return verifier.verify(token);
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return verifyJwtToken(token).getSubject();
   }
 
   public boolean validateJwtToken(String authToken) {
-    try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
-    } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
-    } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
-    } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
-    } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
-    } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
-    }
-
-    return false;
+    return verifyJwtToken(authToken).isValid();
   }
 }
@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+
+import io.jsonwebtoken.Claims;
+
+public final class JwtVerification {
+  public enum Failure {
+    INVALID_SIGNATURE,
+    MALFORMED,
+    EXPIRED,
+    UNSUPPORTED,
+    EMPTY
+  }
+
+  private final Claims claims;
+
+  private final Failure failure;
+
+  private JwtVerification(Claims claims, Failure failure) {
+    this.claims = claims;
+    this.failure = failure;
+  }
+
+  public static JwtVerification valid(Claims claims) {
+    return new JwtVerification(claims, null);
+  }
+
+  public static JwtVerification invalid(Failure failure) {
+    return new JwtVerification(null, failure);
+  }
+
+  public boolean isValid() {
+    return failure == null;
+  }
+
+  public Failure getFailure() {
+    return failure;
+  }
+
+  public Claims getClaims() {
+    return claims;
+  }
+
+  public String getSubject() {
+    return claims != null ? claims.getSubject() : null;
+  }
+
+  public String getId() {
+    return claims != null ? claims.getId() : null;
+  }
+
+  public Date getExpiration() {
+    return claims != null ? claims.getExpiration() : null;
+  }
+}
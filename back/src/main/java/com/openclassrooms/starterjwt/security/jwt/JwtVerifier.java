@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.security.Key;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.jsonwebtoken.*;
+
+/**
+ * Parses and verifies a token in a single pass. The parser and its signing key are
+ * built once and reused, as the jjwt parser holds no per-call state.
+ */
+public class JwtVerifier {
+  private static final Logger logger = LoggerFactory.getLogger(JwtVerifier.class);
+
+  private final JwtParser parser;
+
+  public JwtVerifier(Key signingKey) {
+    this.parser = Jwts.parser().setSigningKey(signingKey);
+  }
+
+  public JwtVerification verify(String token) {
+    try {
+      return JwtVerification.valid(parser.parseClaimsJws(token).getBody());
+    } catch (SignatureException e) {
+      logger.error("Invalid JWT signature: {}", e.getMessage());
+      return JwtVerification.invalid(JwtVerification.Failure.INVALID_SIGNATURE);
+    } catch (MalformedJwtException e) {
+      logger.error("Invalid JWT token: {}", e.getMessage());
+      return JwtVerification.invalid(JwtVerification.Failure.MALFORMED);
+    } catch (ExpiredJwtException e) {
+      logger.error("JWT token is expired: {}", e.getMessage());
+      return JwtVerification.invalid(JwtVerification.Failure.EXPIRED);
+    } catch (UnsupportedJwtException e) {
+      logger.error("JWT token is unsupported: {}", e.getMessage());
+      return JwtVerification.invalid(JwtVerification.Failure.UNSUPPORTED);
+    } catch (IllegalArgumentException e) {
+      logger.error("JWT claims string is empty: {}", e.getMessage());
+      return JwtVerification.invalid(JwtVerification.Failure.EMPTY);
+    }
+  }
+}
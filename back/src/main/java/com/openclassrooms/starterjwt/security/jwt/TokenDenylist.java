@@ -0,0 +1,149 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.RevokedToken;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Revoked token ids, kept until the token would have expired anyway.
+ *
+ * Lookups are a single hash probe. Expiry is driven by a timing wheel: each id is
+ * parked in the slot of the tick following its expiry, and slots are swept as the
+ * clock moves past them, so no background thread is needed. Ids living longer than
+ * one revolution simply stay in their slot until a sweep finds them due.
+ *
+ * Self-contained tokens of a deleted user are revoked by user id instead, for as long
+ * as an access token issued just before the deletion stays valid.
+ */
+@Component
+public class TokenDenylist {
+  private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+
+  // never collides with a jti, those are UUIDs
+  private static final String USER_PREFIX = "user:";
+
+  private final RevokedTokenRepository revokedTokenRepository;
+
+  private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+  private final Queue<String>[] wheel;
+
+  private final long tickMs;
+
+  private final long accessTokenTtlMs;
+
+  private final LongSupplier clock;
+
+  private final ReentrantLock sweepLock = new ReentrantLock();
+
+  private volatile long lastTick;
+
+  @Autowired
+  public TokenDenylist(RevokedTokenRepository revokedTokenRepository,
+      MeterRegistry meterRegistry,
+      @Value("${oc.app.denylist.tickMs:60000}") long tickMs,
+      @Value("${oc.app.denylist.wheelSize:1440}") int wheelSize,
+      @Value("${oc.app.jwtExpirationMs}") long accessTokenTtlMs) {
+    this(revokedTokenRepository, tickMs, wheelSize, accessTokenTtlMs, System::currentTimeMillis);
+    Gauge.builder("auth.token.denylist.size", this, TokenDenylist::size).register(meterRegistry);
+  }
+
+  @SuppressWarnings("unchecked")
+  TokenDenylist(RevokedTokenRepository revokedTokenRepository, long tickMs, int wheelSize, long accessTokenTtlMs,
+      LongSupplier clock) {
+    this.revokedTokenRepository = revokedTokenRepository;
+    this.tickMs = tickMs;
+    this.accessTokenTtlMs = accessTokenTtlMs;
+    this.clock = clock;
+    this.wheel = new Queue[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      wheel[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.lastTick = clock.getAsLong() / tickMs;
+  }
+
+  @PostConstruct
+  public void load() {
+    Date now = new Date(clock.getAsLong());
+    long purged = revokedTokenRepository.deleteByExpiresAtBefore(now);
+    for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(now)) {
+      track(token.getJti(), token.getExpiresAt().getTime());
+    }
+    logger.info("Loaded {} revoked tokens, purged {} expired ones", revoked.size(), purged);
+  }
+
+  public void revoke(String jti, Date expiresAt) {
+    if (expiresAt.getTime() <= clock.getAsLong()) {
+      return;
+    }
+    revokedTokenRepository.save(RevokedToken.builder().jti(jti).expiresAt(expiresAt).build());
+    track(jti, expiresAt.getTime());
+  }
+
+  public boolean isRevoked(String jti) {
+    sweep();
+    return jti != null && revoked.containsKey(jti);
+  }
+
+  public void revokeUser(Long userId) {
+    revoke(USER_PREFIX + userId, new Date(clock.getAsLong() + accessTokenTtlMs));
+  }
+
+  public boolean isUserRevoked(Long userId) {
+    return userId != null && isRevoked(USER_PREFIX + userId);
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  private void track(String jti, long expiresAt) {
+    if (revoked.put(jti, expiresAt) == null) {
+      wheel[(int) ((expiresAt / tickMs + 1) % wheel.length)].add(jti);
+    }
+  }
+
+  private void sweep() {
+    long now = clock.getAsLong();
+    long tick = now / tickMs;
+    if (tick <= lastTick || !sweepLock.tryLock()) {
+      return;
+    }
+    try {
+      // after a long idle period one revolution is enough to visit every slot
+      long last = Math.min(tick, lastTick + wheel.length);
+      for (long t = lastTick + 1; t <= last; t++) {
+        Iterator<String> slot = wheel[(int) (t % wheel.length)].iterator();
+        while (slot.hasNext()) {
+          String jti = slot.next();
+          Long expiresAt = revoked.get(jti);
+          if (expiresAt == null || expiresAt <= now) {
+            slot.remove();
+            revoked.remove(jti);
+          }
+        }
+      }
+      lastTick = tick;
+    } finally {
+      sweepLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.openclassrooms.starterjwt.exception.ErrorBodyTemplate;
+
+/**
+ * Rejects auth requests over their rate with a 429 before they reach the controller,
+ * so throttled clients cost no password hashing.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+  private static final Logger logger = LoggerFactory.getLogger(AuthRateLimitFilter.class);
+
+  static final int MAX_BODY_BYTES = 4096;
+
+  private static final String[] LIMITED_PATHS = {"/api/auth/login", "/api/auth/register", "/api/auth/refresh"};
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final ErrorBodyTemplate TOO_MANY_REQUESTS = new ErrorBodyTemplate(HttpStatus.TOO_MANY_REQUESTS);
+
+  @Autowired
+  private AuthRateLimiter authRateLimiter;
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!"POST".equals(request.getMethod())) {
+      return true;
+    }
+    String path = request.getServletPath();
+    for (String limited : LIMITED_PATHS) {
+      if (limited.equals(path)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    BufferedBodyRequest bufferedRequest = new BufferedBodyRequest(request, MAX_BODY_BYTES);
+
+    long waitMs = authRateLimiter.tryAcquire(request.getRemoteAddr(), readEmail(bufferedRequest.getBody()));
+    if (waitMs > 0) {
+      reject(request, response, waitMs);
+      return;
+    }
+
+    filterChain.doFilter(bufferedRequest, response);
+  }
+
+  private void reject(HttpServletRequest request, HttpServletResponse response, long waitMs) throws IOException {
+    logger.warn("Throttled {} from {}", request.getServletPath(), request.getRemoteAddr());
+
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMs + 999) / 1000));
+
+    TOO_MANY_REQUESTS.write(response.getOutputStream(), "Too many requests, please retry later", request.getServletPath());
+  }
+
+  /**
+   * @return the top level "email" field of a JSON body, or null
+   */
+  static String readEmail(byte[] body) {
+    if (body == null || body.length == 0) {
+      return null;
+    }
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        token = parser.nextToken();
+        if ("email".equals(field)) {
+          return token == JsonToken.VALUE_STRING ? parser.getText() : null;
+        }
+        parser.skipChildren();
+      }
+      return null;
+    } catch (IOException e) {
+      // malformed bodies are rejected by the controller, throttle them by IP only
+      return null;
+    }
+  }
+}
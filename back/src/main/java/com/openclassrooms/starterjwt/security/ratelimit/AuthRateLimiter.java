@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Throttles the auth endpoints per client IP and per account email.
+ */
+@Component
+public class AuthRateLimiter {
+  private final TokenBuckets byIp;
+
+  private final TokenBuckets byEmail;
+
+  private final Counter throttledByIp;
+
+  private final Counter throttledByEmail;
+
+  @Autowired
+  public AuthRateLimiter(MeterRegistry meterRegistry,
+      @Value("${oc.app.rateLimit.ip.capacity:20}") int ipCapacity,
+      @Value("${oc.app.rateLimit.email.capacity:5}") int emailCapacity,
+      @Value("${oc.app.rateLimit.refillPeriodMs:60000}") long refillPeriodMs,
+      @Value("${oc.app.rateLimit.maxKeys:100000}") int maxKeys) {
+    this(new TokenBuckets(ipCapacity, refillPeriodMs, maxKeys),
+        new TokenBuckets(emailCapacity, refillPeriodMs, maxKeys),
+        meterRegistry);
+  }
+
+  AuthRateLimiter(TokenBuckets byIp, TokenBuckets byEmail, MeterRegistry meterRegistry) {
+    this.byIp = byIp;
+    this.byEmail = byEmail;
+    this.throttledByIp = Counter.builder("auth.ratelimit.throttled").tag("key", "ip").register(meterRegistry);
+    this.throttledByEmail = Counter.builder("auth.ratelimit.throttled").tag("key", "email").register(meterRegistry);
+    Gauge.builder("auth.ratelimit.keys", this, limiter -> limiter.byIp.size() + limiter.byEmail.size())
+        .register(meterRegistry);
+  }
+
+  /**
+   * @return 0 when the request may proceed, otherwise the number of milliseconds to wait
+   */
+  public long tryAcquire(String ip, String email) {
+    long wait = byIp.tryAcquire(ip);
+    if (wait > 0) {
+      throttledByIp.increment();
+      return wait;
+    }
+
+    if (email != null) {
+      wait = byEmail.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+      if (wait > 0) {
+        throttledByEmail.increment();
+      }
+    }
+    return wait;
+  }
+}
@@ -0,0 +1,105 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Reads at most {@code limit} bytes of the body up front and replays them, followed
+ * by whatever is left of the original stream, to the rest of the chain.
+ */
+class BufferedBodyRequest extends HttpServletRequestWrapper {
+  private final byte[] head;
+
+  private final boolean complete;
+
+  BufferedBodyRequest(HttpServletRequest request, int limit) throws IOException {
+    super(request);
+    InputStream in = request.getInputStream();
+    byte[] buffer = new byte[limit + 1];
+    int length = 0;
+    int read;
+    while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+      length += read;
+    }
+    this.complete = length <= limit;
+    this.head = Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * @return the whole body, or null when it is larger than the limit
+   */
+  byte[] getBody() {
+    return complete ? head : null;
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    ByteArrayInputStream buffered = new ByteArrayInputStream(head);
+    ServletInputStream original = complete ? null : super.getInputStream();
+    InputStream stream = complete ? buffered : new SequenceInputStream(buffered, original);
+    return new ServletInputStream() {
+      private boolean finished;
+
+      @Override
+      public int read() throws IOException {
+        int b = stream.read();
+        finished = b == -1;
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int n = stream.read(b, off, len);
+        finished = n == -1;
+        return n;
+      }
+
+      @Override
+      public boolean isFinished() {
+        return complete ? buffered.available() == 0 : finished || original.isFinished();
+      }
+
+      @Override
+      public boolean isReady() {
+        return complete || buffered.available() > 0 || original.isReady();
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+        if (!complete) {
+          // the container calls back once the rest of the body arrives, reads replay the head first
+          original.setReadListener(readListener);
+          return;
+        }
+        // everything is in memory already: it is all available, then all read
+        try {
+          if (buffered.available() > 0) {
+            readListener.onDataAvailable();
+          }
+          readListener.onAllDataRead();
+        } catch (IOException e) {
+          readListener.onError(e);
+        }
+      }
+    };
+  }
+
+  @Override
+  public BufferedReader getReader() throws IOException {
+    String encoding = getCharacterEncoding();
+    Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+    return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+  }
+}
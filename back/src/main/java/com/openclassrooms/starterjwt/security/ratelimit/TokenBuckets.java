@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by an arbitrary string (client IP, email...).
+ *
+ * Keys are spread over lock stripes, each one a small LRU map, so contention stays
+ * low and the total number of tracked keys is bounded: the least recently seen key of
+ * a full stripe is forgotten, which at worst hands that client a fresh bucket.
+ */
+public class TokenBuckets {
+  private static final int STRIPES = 64;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  private final double capacity;
+
+  private final double tokensPerMs;
+
+  private final LongSupplier clock;
+
+  public TokenBuckets(int capacity, long refillPeriodMs, int maxKeys) {
+    this(capacity, refillPeriodMs, maxKeys, System::currentTimeMillis);
+  }
+
+  /**
+   * @param capacity burst size, also the number of tokens added per refill period
+   */
+  TokenBuckets(int capacity, long refillPeriodMs, int maxKeys, LongSupplier clock) {
+    this.capacity = capacity;
+    this.tokensPerMs = (double) capacity / refillPeriodMs;
+    this.clock = clock;
+    int keysPerStripe = Math.max(1, maxKeys / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(keysPerStripe);
+    }
+  }
+
+  /**
+   * @return 0 when a token was taken, otherwise the number of milliseconds until one is available
+   */
+  public long tryAcquire(String key) {
+    Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    long now = clock.getAsLong();
+    synchronized (stripe) {
+      Bucket bucket = stripe.get(key);
+      if (bucket == null) {
+        bucket = new Bucket(capacity, now);
+        stripe.put(key, bucket);
+      } else {
+        bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * tokensPerMs);
+        bucket.updatedAt = now;
+      }
+
+      if (bucket.tokens >= 1) {
+        bucket.tokens--;
+        return 0;
+      }
+      return (long) Math.ceil((1 - bucket.tokens) / tokensPerMs);
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  private static final class Bucket {
+    private double tokens;
+
+    private long updatedAt;
+
+    private Bucket(double tokens, long updatedAt) {
+      this.tokens = tokens;
+      this.updatedAt = updatedAt;
+    }
+  }
+
+  private static final class Stripe extends LinkedHashMap<String, Bucket> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxKeys;
+
+    private Stripe(int maxKeys) {
+      super(16, 0.75f, true);
+      this.maxKeys = maxKeys;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+      return size() > maxKeys;
+    }
+  }
+}
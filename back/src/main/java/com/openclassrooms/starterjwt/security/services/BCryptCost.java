@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The BCrypt cost factor used for new hashes. Unless pinned with
+ * {@code oc.app.bcrypt.strength}, it is calibrated once at startup so that a
+ * verification takes roughly {@code oc.app.bcrypt.targetMs} on this machine.
+ */
+@Component
+public class BCryptCost {
+  private static final Logger logger = LoggerFactory.getLogger(BCryptCost.class);
+
+  static final int MAX_COST = 31;
+
+  private static final int PROBE_COST = 8;
+
+  private static final int PROBE_RUNS = 3;
+
+  private static final String PROBE_PASSWORD = "calibration";
+
+  private final int cost;
+
+  @Autowired
+  public BCryptCost(MeterRegistry meterRegistry,
+      @Value("${oc.app.bcrypt.strength:0}") int strength,
+      @Value("${oc.app.bcrypt.targetMs:100}") long targetMs,
+      @Value("${oc.app.bcrypt.minCost:10}") int minCost) {
+    this(strength > 0 ? strength : calibrate(targetMs, minCost));
+    Gauge.builder("auth.bcrypt.cost", this, BCryptCost::getCost).register(meterRegistry);
+  }
+
+  BCryptCost(int cost) {
+    this.cost = cost;
+  }
+
+  public int getCost() {
+    return cost;
+  }
+
+  public boolean matches(String hash) {
+    return costOf(hash) == cost;
+  }
+
+  /**
+   * @return the cost factor of a {@code $2a$10$...} style hash, or -1 when it is not a BCrypt hash
+   */
+  static int costOf(String hash) {
+    if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+      return -1;
+    }
+    char tens = hash.charAt(4);
+    char units = hash.charAt(5);
+    if (!Character.isDigit(tens) || !Character.isDigit(units)) {
+      return -1;
+    }
+    return (tens - '0') * 10 + (units - '0');
+  }
+
+  static int calibrate(long targetMs, int minCost) {
+    String hash = BCrypt.hashpw(PROBE_PASSWORD, BCrypt.gensalt(PROBE_COST));
+    BCrypt.checkpw(PROBE_PASSWORD, hash);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < PROBE_RUNS; i++) {
+      BCrypt.checkpw(PROBE_PASSWORD, hash);
+    }
+    double probeMs = Math.max((System.nanoTime() - start) / 1_000_000.0 / PROBE_RUNS, 0.001);
+
+    // every extra round doubles the work
+    int cost = PROBE_COST + (int) Math.round(Math.log(targetMs / probeMs) / Math.log(2));
+    cost = Math.max(minCost, Math.min(MAX_COST, cost));
+    logger.info("BCrypt cost calibrated to {} ({} ms at cost {}, target {} ms)",
+        cost, String.format("%.1f", probeMs), PROBE_COST, targetMs);
+    return cost;
+  }
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Brings stored hashes to the current {@link BCryptCost} after a successful login,
+ * the only moment the raw password is known.
+ */
+@Service
+public class PasswordRehashService {
+  private static final Logger logger = LoggerFactory.getLogger(PasswordRehashService.class);
+
+  private final UserRepository userRepository;
+
+  private final PasswordEncoder passwordEncoder;
+
+  private final BCryptCost bCryptCost;
+
+  private final Executor passwordHashingExecutor;
+
+  private final Counter rehashed;
+
+  public PasswordRehashService(UserRepository userRepository,
+      PasswordEncoder passwordEncoder,
+      BCryptCost bCryptCost,
+      @Qualifier("passwordHashingExecutor") Executor passwordHashingExecutor,
+      MeterRegistry meterRegistry) {
+    this.userRepository = userRepository;
+    this.passwordEncoder = passwordEncoder;
+    this.bCryptCost = bCryptCost;
+    this.passwordHashingExecutor = passwordHashingExecutor;
+    this.rehashed = Counter.builder("auth.bcrypt.rehash").register(meterRegistry);
+  }
+
+  public void rehashIfNeeded(UserDetailsImpl user, String rawPassword) {
+    String currentHash = user.getPassword();
+    if (currentHash == null || bCryptCost.matches(currentHash)) {
+      return;
+    }
+
+    try {
+      passwordHashingExecutor.execute(() -> {
+        // only replace the hash we verified, a concurrent password change wins
+        if (userRepository.updatePassword(user.getId(), currentHash, passwordEncoder.encode(rawPassword)) > 0) {
+          rehashed.increment();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      logger.debug("Skipping rehash for user {}, executor saturated", user.getId());
+    }
+  }
+}
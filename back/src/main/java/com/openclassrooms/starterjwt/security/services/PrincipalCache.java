@@ -0,0 +1,59 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Component
+public class PrincipalCache implements MeterBinder {
+  private final ExpiringCache<String, UserDetails> cache;
+
+  @Autowired
+  public PrincipalCache(@Value("${oc.app.principalCache.maxSize:10000}") int maxSize,
+      @Value("${oc.app.principalCache.ttlMs:60000}") long ttlMs) {
+    this.cache = new ExpiringCache<>(maxSize, ttlMs);
+  }
+
+  PrincipalCache(ExpiringCache<String, UserDetails> cache) {
+    this.cache = cache;
+  }
+
+  public UserDetails get(String username, Function<String, UserDetails> loader) {
+    return cache.get(username, loader);
+  }
+
+  public void evict(String username) {
+    cache.invalidate(username);
+  }
+
+  public void evictById(Long id) {
+    cache.invalidateIf(userDetails -> userDetails instanceof UserDetailsImpl
+        && Objects.equals(((UserDetailsImpl) userDetails).getId(), id));
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    cache.bindTo(registry, "auth.principal.cache");
+  }
+}
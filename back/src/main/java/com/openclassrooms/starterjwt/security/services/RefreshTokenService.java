@@ -0,0 +1,116 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.codec.Hex;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Long-lived refresh tokens, stored as SHA-256 hashes and rotated on every use.
+ * Presenting a token that was already rotated means it leaked: its whole family,
+ * including the current successor, is revoked.
+ */
+@Service
+public class RefreshTokenService {
+  private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+  private final SecureRandom random = new SecureRandom();
+
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final long refreshExpirationMs;
+
+  public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+      @Value("${oc.app.jwtRefreshExpirationMs}") long refreshExpirationMs) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.refreshExpirationMs = refreshExpirationMs;
+  }
+
+  @PostConstruct
+  public void purgeExpired() {
+    refreshTokenRepository.deleteByExpiresAtBefore(new Date());
+  }
+
+  public String issue(Long userId) {
+    return issue(userId, UUID.randomUUID().toString());
+  }
+
+  /**
+   * @return the successor token and its owner, or null when the token is unknown,
+   * expired or already used
+   */
+  public Rotation rotate(String token) {
+    RefreshToken current = refreshTokenRepository.findByTokenHash(hash(token)).orElse(null);
+    if (current == null) {
+      return null;
+    }
+
+    if (current.isUsed() || refreshTokenRepository.markUsed(current.getId()) == 0) {
+      logger.warn("Refresh token reuse detected for user {}, revoking its family", current.getUserId());
+      refreshTokenRepository.deleteByFamily(current.getFamily());
+      return null;
+    }
+
+    if (current.getExpiresAt().before(new Date())) {
+      return null;
+    }
+
+    return new Rotation(current.getUserId(), issue(current.getUserId(), current.getFamily()));
+  }
+
+  /**
+   * Ends every login of the user: none of their refresh tokens can be rotated afterwards.
+   */
+  public void revokeAll(Long userId) {
+    refreshTokenRepository.deleteByUserId(userId);
+  }
+
+  private String issue(Long userId, String family) {
+    byte[] bytes = new byte[32];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    refreshTokenRepository.save(RefreshToken.builder()
+        .tokenHash(hash(token))
+        .userId(userId)
+        .family(family)
+        .expiresAt(new Date(System.currentTimeMillis() + refreshExpirationMs))
+        .build());
+
+    return token;
+  }
+
+  private static String hash(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return new String(Hex.encode(digest.digest(token.getBytes(StandardCharsets.UTF_8))));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class Rotation {
+    private final Long userId;
+
+    private final String token;
+  }
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Per-user outcome of a batch enrollment.
+ */
+public enum Enrollment {
+    BOOKED,
+
+    WAITLISTED,
+
+    ALREADY_PARTICIPATING,
+
+    ALREADY_WAITLISTED,
+
+    USER_NOT_FOUND,
+
+    // the id was already listed earlier in the same batch
+    DUPLICATE
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Outcome of a participation request.
+ */
+public enum Participation {
+    BOOKED,
+
+    // the session is full, the user is queued and will be booked when a seat frees up
+    WAITLISTED
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position in the (date, id) ordering of sessions, exchanged with clients as an
+ * opaque url-safe string.
+ */
+public final class SessionCursor {
+    private final Date date;
+
+    private final Long id;
+
+    public SessionCursor(Date date, Long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static SessionCursor of(Session session) {
+        return new SessionCursor(session.getDate(), session.getId());
+    }
+
+    public static SessionCursor of(SessionDto session) {
+        return new SessionCursor(session.getDate(), session.getId());
+    }
+
+    /**
+     * @return the cursor, or null when the value was not produced by {@link #encode()}
+     */
+    public static SessionCursor decode(String value) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        int separator = raw.indexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return new SessionCursor(new Date(Long.parseLong(raw.substring(0, separator))),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        String raw = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
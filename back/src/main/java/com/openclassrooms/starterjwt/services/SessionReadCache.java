@@ -0,0 +1,227 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Mapped sessions, kept as an immutable snapshot of the whole listing plus a bounded cache of single sessions.
+ *
+ * Every write bumps a version once its transaction commits. Entries remember the version they were loaded at
+ * and are only served while it is current, so a load racing with a write can never be served after it. Reads
+ * of a current snapshot are a single volatile read.
+ */
+@Component
+public class SessionReadCache {
+    private final AtomicLong version = new AtomicLong();
+
+    // keeps tags from one run from matching the next
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final ExpiringCache<Long, Versioned> byId;
+
+    private final int maxSnapshotSize;
+
+    private final long ttlMs;
+
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public SessionReadCache(MeterRegistry meterRegistry,
+                            @Value("${oc.app.sessionCache.maxSize:1000}") int maxSize,
+                            @Value("${oc.app.sessionCache.maxSnapshotSize:5000}") int maxSnapshotSize,
+                            @Value("${oc.app.sessionCache.ttlMs:60000}") long ttlMs) {
+        this(maxSize, maxSnapshotSize, ttlMs, System::currentTimeMillis);
+        FunctionCounter.builder("session.cache.hits", this, SessionReadCache::getHits).register(meterRegistry);
+        FunctionCounter.builder("session.cache.misses", this, SessionReadCache::getMisses).register(meterRegistry);
+        FunctionCounter.builder("session.cache.invalidations", this, SessionReadCache::getInvalidations).register(meterRegistry);
+        Gauge.builder("session.cache.size", this, SessionReadCache::size).register(meterRegistry);
+        Gauge.builder("session.cache.hit.ratio", this, SessionReadCache::getHitRatio).register(meterRegistry);
+    }
+
+    SessionReadCache(int maxSize, int maxSnapshotSize, long ttlMs, LongSupplier clock) {
+        this.byId = new ExpiringCache<>(maxSize, ttlMs, clock);
+        this.maxSnapshotSize = maxSnapshotSize;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Read it before loading: a response tagged with it can then only be newer than the tag, never older.
+     *
+     * @return an identifier of the current data, changed by every write
+     */
+    public String getTag() {
+        return this.epoch + "-" + version.get();
+    }
+
+    /**
+     * Never loads anything: for reads that have a cheaper path of their own when there is no snapshot.
+     *
+     * @return the shared, unmodifiable listing when a current snapshot exists, null otherwise
+     */
+    public List<SessionDto> getAllIfPresent() {
+        Snapshot cached = currentSnapshot(version.get());
+        if (cached == null) {
+            return null;
+        }
+        hits.increment();
+        return cached.sessions;
+    }
+
+    /**
+     * @param loader every session in listing order, or null to skip caching
+     * @return the shared, unmodifiable listing; null when the loader returned null
+     */
+    public List<SessionDto> getAll(Supplier<List<SessionDto>> loader) {
+        long current = version.get();
+        Snapshot cached = currentSnapshot(current);
+        if (cached != null) {
+            hits.increment();
+            return cached.sessions;
+        }
+
+        misses.increment();
+        List<SessionDto> loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+        Snapshot built = new Snapshot(current, loaded, clock.getAsLong() + ttlMs);
+        if (loaded.size() <= maxSnapshotSize) {
+            snapshot = built;
+        }
+        return built.sessions;
+    }
+
+    /**
+     * @param loader the session, or null when it does not exist
+     */
+    public SessionDto get(Long id, Function<Long, SessionDto> loader) {
+        long current = version.get();
+        Snapshot cached = currentSnapshot(current);
+        if (cached != null) {
+            hits.increment();
+            return cached.byId.get(id);
+        }
+
+        Versioned entry = byId.getIfPresent(id);
+        if (entry != null && entry.version == current) {
+            hits.increment();
+            return entry.session;
+        }
+
+        misses.increment();
+        SessionDto loaded = loader.apply(id);
+        if (loaded != null) {
+            byId.put(id, new Versioned(current, loaded));
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops every entry once the surrounding transaction commits, right away outside of one.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow();
+                }
+            });
+        } else {
+            invalidateNow();
+        }
+    }
+
+    public void invalidateNow() {
+        // bump first: a load still in flight will then be stored under a stale version
+        version.incrementAndGet();
+        snapshot = null;
+        byId.invalidateAll();
+        invalidations.increment();
+    }
+
+    public int size() {
+        Snapshot cached = snapshot;
+        return byId.size() + (cached == null ? 0 : cached.sessions.size());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private Snapshot currentSnapshot(long current) {
+        Snapshot cached = snapshot;
+        if (cached == null || cached.version != current || cached.expiresAt <= clock.getAsLong()) {
+            return null;
+        }
+        return cached;
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final List<SessionDto> sessions;
+        private final Map<Long, SessionDto> byId;
+        private final long expiresAt;
+
+        private Snapshot(long version, List<SessionDto> sessions, long expiresAt) {
+            this.version = version;
+            this.sessions = Collections.unmodifiableList(new ArrayList<>(sessions));
+            Map<Long, SessionDto> index = new HashMap<>();
+            for (SessionDto session : sessions) {
+                index.put(session.getId(), session);
+            }
+            this.byId = Collections.unmodifiableMap(index);
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Versioned {
+        private final long version;
+        private final SessionDto session;
+
+        private Versioned(long version, SessionDto session) {
+            this.version = version;
+            this.session = session;
+        }
+    }
+}
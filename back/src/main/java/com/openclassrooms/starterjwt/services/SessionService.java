@@ -1,78 +1,443 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.EnrollmentResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipantDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.EnrollmentJdbcRepository;
+import com.openclassrooms.starterjwt.repository.SessionJdbcRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class SessionService {
+    // keeps IN lists far below the bind parameter limits of the drivers
+    static final int PARTICIPANT_ID_CHUNK = 1000;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final WaitlistRepository waitlistRepository;
+
+    private final EnrollmentJdbcRepository enrollmentJdbcRepository;
+
+    private final SessionJdbcRepository sessionJdbcRepository;
+
+    private final SessionMapper sessionMapper;
+
+    private final SessionReadCache readCache;
+
+    private final TeacherService teacherService;
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository,
+                          WaitlistRepository waitlistRepository, EnrollmentJdbcRepository enrollmentJdbcRepository,
+                          SessionJdbcRepository sessionJdbcRepository, SessionMapper sessionMapper,
+                          SessionReadCache readCache, TeacherService teacherService) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.enrollmentJdbcRepository = enrollmentJdbcRepository;
+        this.sessionJdbcRepository = sessionJdbcRepository;
+        this.sessionMapper = sessionMapper;
+        this.readCache = readCache;
+        this.teacherService = teacherService;
     }
 
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        Session created = this.sessionRepository.save(session);
+        this.sessionRepository.syncBookedSeats(created.getId());
+        this.readCache.invalidate();
+        return created;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.waitlistRepository.clear(id);
         this.sessionRepository.deleteById(id);
+        this.readCache.invalidate();
+    }
+
+    /**
+     * @return an identifier of the session data currently served, changed by every write
+     */
+    public String getDataTag() {
+        return this.readCache.getTag();
+    }
+
+    /**
+     * @return every session with its participant ids in (date, id) order, shared and unmodifiable
+     */
+    public List<SessionDto> findAllDtos() {
+        return this.readCache.getAll(() -> this.sessionMapper.toDto(findAll(),
+                groupParticipantRows(this.sessionRepository.findAllParticipantRows())));
+    }
+
+    /**
+     * Streams every session straight from the database in (date, id) order, bypassing the read cache: meant
+     * for listings too large to hold in memory at once.
+     *
+     * @param withUsers whether to read participant ids, only their count otherwise
+     */
+    public void forEachDto(boolean withUsers, Consumer<SessionDto> consumer) {
+        this.sessionJdbcRepository.forEach(withUsers, consumer);
+    }
+
+    /**
+     * Serves the page from the cached listing when one is current, with a keyset seek otherwise. A page never
+     * builds the listing: after a write that would cost a full load for a handful of rows.
+     *
+     * @return up to {@code limit} sessions following {@code after} in (date, id) order, from the start when null
+     */
+    public List<SessionDto> findDtoPage(SessionCursor after, int limit) {
+        List<SessionDto> all = this.readCache.getAllIfPresent();
+        if (all == null) {
+            return toDtos(findPage(after, limit));
+        }
+
+        int from = 0;
+        if (after != null) {
+            // first position past the cursor
+            int high = all.size();
+            while (from < high) {
+                int middle = (from + high) >>> 1;
+                if (compare(all.get(middle), after) <= 0) {
+                    from = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+        }
+        return all.subList(from, Math.min(from + limit, all.size()));
     }
 
+    /**
+     * Reads the database directly: a window is small and served by an index, whatever the table size.
+     *
+     * @return sessions dated in [from, to) with their participant ids, only those of {@code teacherId} unless
+     * null, in (date, id) order
+     */
+    public List<SessionDto> findDtosInRange(Date from, Date to, Long teacherId) {
+        List<Session> sessions = teacherId == null
+                ? this.sessionRepository.findInRange(from, to)
+                : this.sessionRepository.findInRangeByTeacher(teacherId, from, to);
+        return toDtos(sessions);
+    }
+
+    /**
+     * @return the session with its participant ids, or null when it does not exist
+     */
+    public SessionDto findDtoById(Long id) {
+        return this.readCache.get(id, key -> {
+            Session session = getById(key);
+            return session == null ? null : toDtos(Collections.singletonList(session)).get(0);
+        });
+    }
+
+    /**
+     * @return every session with its teacher; participants are left unloaded, see {@link #findParticipantIds}
+     */
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * @return up to {@code limit} sessions following {@code after} in (date, id) order, from the start when null
+     */
+    public List<Session> findPage(SessionCursor after, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<Long> ids = after == null
+                ? this.sessionRepository.findFirstPageIds(page)
+                : this.sessionRepository.findPageIdsAfter(after.getDate(), after.getId(), page);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return this.sessionRepository.findAllWithTeacherByIdIn(ids);
+    }
+
+    /**
+     * @return the session and its teacher; participants are left unloaded, see {@link #findParticipantIds}
+     */
     public Session getById(Long id) {
-        return this.sessionRepository.findById(id).orElse(null);
+        return this.sessionRepository.findWithTeacherById(id).orElse(null);
     }
 
+    /**
+     * @return participant user ids by session id, read from the join table only, {@value #PARTICIPANT_ID_CHUNK}
+     * sessions per query; sessions without participants are absent from the map
+     */
+    public Map<Long, List<Long>> findParticipantIds(Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (sessionIds.size() <= PARTICIPANT_ID_CHUNK) {
+            return groupParticipantRows(this.sessionRepository.findParticipantRows(sessionIds));
+        }
+
+        List<Long> ids = new ArrayList<>(sessionIds);
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += PARTICIPANT_ID_CHUNK) {
+            rows.addAll(this.sessionRepository.findParticipantRows(
+                    ids.subList(from, Math.min(from + PARTICIPANT_ID_CHUNK, ids.size()))));
+        }
+        return groupParticipantRows(rows);
+    }
+
+    private static Map<Long, List<Long>> groupParticipantRows(List<Object[]> rows) {
+        Map<Long, List<Long>> participantIds = new HashMap<>();
+        for (Object[] row : rows) {
+            participantIds.computeIfAbsent(((Number) row[0]).longValue(), sessionId -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        return participantIds;
+    }
+
+    /**
+     * @return up to {@code limit} participants of the session with a user id above {@code afterUserId}
+     * (from the start when null), in user id order
+     * @throws NotFoundException when the session does not exist
+     */
+    public List<ParticipantDto> findParticipants(Long id, Long afterUserId, int limit) {
+        List<ParticipantDto> participants = this.sessionRepository.findParticipantsAfter(
+                id, afterUserId == null ? 0L : afterUserId, PageRequest.of(0, limit));
+        // an empty page is the only case where the session may be missing
+        if (participants.isEmpty() && !this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+        return participants;
+    }
+
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        Session updated = this.sessionRepository.save(session);
+        // the participant list is replaced wholesale, recount the seats it takes
+        this.sessionRepository.syncBookedSeats(id);
+        // a larger or removed capacity, or fewer participants, may have freed seats; the recount above holds
+        // the session row lock until commit
+        promoteWaitlist(id);
+        this.readCache.invalidate();
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
-            throw new NotFoundException();
+    /**
+     * Applies the given fields to the managed session. Only the columns that actually changed are written, and
+     * participants are neither loaded nor rewritten.
+     *
+     * @throws NotFoundException when the session does not exist
+     * @throws UnknownIdsException when the new teacher does not exist
+     */
+    @Transactional
+    public Session patch(Long id, SessionPatchDto patch) {
+        Session session = this.sessionRepository.findWithTeacherById(id).orElseThrow(NotFoundException::new);
+
+        if (patch.getName() != null) {
+            session.setName(patch.getName());
+        }
+        if (patch.getDate() != null) {
+            session.setDate(patch.getDate());
+        }
+        if (patch.getDescription() != null) {
+            session.setDescription(patch.getDescription());
+        }
+        boolean capacityChanged = patch.isCapacityPresent() && !Objects.equals(patch.getCapacity(), session.getCapacity());
+        if (capacityChanged) {
+            session.setCapacity(patch.getCapacity());
+        }
+        Long teacherId = patch.getTeacher_id();
+        if (teacherId != null && (session.getTeacher() == null || !teacherId.equals(session.getTeacher().getId()))) {
+            Teacher teacher = this.teacherService.findById(teacherId);
+            if (teacher == null) {
+                throw new UnknownIdsException(Collections.singletonList(teacherId), Collections.emptyList());
+            }
+            session.setTeacher(teacher);
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+        if (capacityChanged) {
+            // the seat counter is compared against the stored capacity, and the update locks the session row
+            this.sessionRepository.flush();
+            promoteWaitlist(id);
         }
+        this.readCache.invalidate();
+        return session;
+    }
 
-        session.getUsers().add(user);
+    /**
+     * Books a seat, or queues the user when the session is full. Seats are taken with a conditional update on
+     * the session's counter, so concurrent bookings only contend on that session's row.
+     *
+     * @throws NotFoundException when the session or the user does not exist
+     * @throws BadRequestException when the user already participates or is already queued
+     */
+    @Transactional
+    public Participation participate(Long id, Long userId) {
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            // full or unknown: decide under the row lock, so a seat freed meanwhile cannot be missed
+            if (!this.sessionRepository.lockById(id).isPresent()) {
+                throw new NotFoundException();
+            }
+            if (this.sessionRepository.reserveSeat(id) == 0) {
+                if (this.waitlistRepository.enqueue(id, userId) == 0) {
+                    throw this.userRepository.existsById(userId) ? new BadRequestException() : new NotFoundException();
+                }
+                this.readCache.invalidate();
+                return Participation.WAITLISTED;
+            }
+        }
 
-        this.sessionRepository.save(session);
+        int added;
+        try {
+            added = this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent request inserted the same row first
+            throw new BadRequestException();
+        }
+        if (added == 0) {
+            // rolls the seat back along with the transaction
+            throw this.userRepository.existsById(userId) ? new BadRequestException() : new NotFoundException();
+        }
+        this.readCache.invalidate();
+        return Participation.BOOKED;
     }
 
+    /**
+     * Gives the seat back, or leaves the waitlist. A freed seat goes to the oldest waitlist entry.
+     *
+     * @throws NotFoundException when the session does not exist
+     * @throws BadRequestException when the user neither participates nor is queued
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        // lock the session first, in the same order as participate
+        if (!this.sessionRepository.lockById(id).isPresent()) {
             throw new NotFoundException();
         }
+        // only takes effect on commit, so the failures below leave the cache alone
+        this.readCache.invalidate();
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
+            if (this.waitlistRepository.dequeue(id, userId) == 0) {
+                throw new BadRequestException();
+            }
+            return;
+        }
+
+        this.sessionRepository.releaseSeat(id);
+        promoteWaitlist(id);
+    }
+
+    /**
+     * Enrolls many users at once, holding the session lock for the whole batch. Users are booked in the given
+     * order while seats are left, then queued. Lookups are one query each whatever the batch size, and rows
+     * are written in JDBC batches.
+     *
+     * @return the outcome for every id, in the given order
+     * @throws NotFoundException when the session does not exist
+     */
+    @Transactional
+    public List<EnrollmentResultDto> enroll(Long id, List<Long> userIds) {
+        if (!this.sessionRepository.lockById(id).isPresent()) {
+            throw new NotFoundException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        Set<Long> requested = new LinkedHashSet<>(userIds);
+        Set<Long> known = new HashSet<>(this.userRepository.findExistingIds(requested));
+        Set<Long> participating = new HashSet<>();
+        for (Number userId : this.sessionRepository.findParticipatingUserIds(id, requested)) {
+            participating.add(userId.longValue());
+        }
+        Set<Long> waiting = new HashSet<>(this.waitlistRepository.findWaitingUserIds(id, requested));
+        Integer seatsLeft = this.sessionRepository.findSeatsLeft(id);
+        int seats = seatsLeft == null ? Integer.MAX_VALUE : Math.max(seatsLeft, 0);
+
+        List<Long> booked = new ArrayList<>();
+        List<Long> queued = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        List<EnrollmentResultDto> results = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            Enrollment status;
+            if (!seen.add(userId)) {
+                status = Enrollment.DUPLICATE;
+            } else if (!known.contains(userId)) {
+                status = Enrollment.USER_NOT_FOUND;
+            } else if (participating.contains(userId)) {
+                status = Enrollment.ALREADY_PARTICIPATING;
+            } else if (waiting.contains(userId)) {
+                status = Enrollment.ALREADY_WAITLISTED;
+            } else if (booked.size() < seats) {
+                booked.add(userId);
+                status = Enrollment.BOOKED;
+            } else {
+                queued.add(userId);
+                status = Enrollment.WAITLISTED;
+            }
+            results.add(new EnrollmentResultDto(userId, status));
+        }
+
+        if (!booked.isEmpty()) {
+            this.enrollmentJdbcRepository.insertParticipants(id, booked);
+            this.sessionRepository.addBookedSeats(id, booked.size());
+        }
+        if (!queued.isEmpty()) {
+            this.enrollmentJdbcRepository.insertWaitlistEntries(id, queued);
+        }
+        this.readCache.invalidate();
+        return results;
+    }
+
+    /**
+     * Hands free seats to the oldest waitlist entries, skipping entries whose user is gone. Call it with the
+     * session row locked, so that no concurrent booking can take a seat ahead of the queue.
+     */
+    private void promoteWaitlist(Long id) {
+        while (true) {
+            WaitlistEntry next = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id).orElse(null);
+            if (next == null || this.sessionRepository.reserveSeat(id) == 0) {
+                return;
+            }
+            this.waitlistRepository.deleteEntry(next.getId());
+            if (this.sessionRepository.addParticipant(id, next.getUserId()) == 0) {
+                this.sessionRepository.releaseSeat(id);
+            }
+        }
+    }
+
+    private List<SessionDto> toDtos(List<Session> sessions) {
+        List<Long> sessionIds = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            sessionIds.add(session.getId());
+        }
+        return this.sessionMapper.toDto(sessions, findParticipantIds(sessionIds));
+    }
 
-        this.sessionRepository.save(session);
+    private static int compare(SessionDto session, SessionCursor cursor) {
+        int byDate = Long.compare(session.getDate().getTime(), cursor.getDate().getTime());
+        return byDate != 0 ? byDate : Long.compare(session.getId(), cursor.getId());
     }
 }
@@ -1,24 +1,104 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Teachers almost never change, so reads are served from memory: single teachers from a size and TTL bounded
+ * cache, the full list from an immutable snapshot that also warms the single-teacher cache. Writes made outside
+ * this service must call {@link #evict} or {@link #evictAll}; otherwise entries live until their TTL.
+ */
 @Service
 public class TeacherService {
+    private static final String ALL = "all";
+
     private final TeacherRepository teacherRepository;
 
-    public TeacherService(TeacherRepository teacherRepository) {
+    private final ExpiringCache<Long, Teacher> byId;
+
+    private final ExpiringCache<String, List<Teacher>> all;
+
+    @Autowired
+    public TeacherService(TeacherRepository teacherRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${oc.app.teacherCache.maxSize:1000}") int maxSize,
+                          @Value("${oc.app.teacherCache.ttlMs:600000}") long ttlMs) {
+        this(teacherRepository, new ExpiringCache<>(maxSize, ttlMs), new ExpiringCache<>(1, ttlMs));
+        this.byId.bindTo(meterRegistry, "teacher.cache");
+        this.all.bindTo(meterRegistry, "teacher.cache.all");
+    }
+
+    public TeacherService(TeacherRepository teacherRepository,
+                          ExpiringCache<Long, Teacher> byId,
+                          ExpiringCache<String, List<Teacher>> all) {
         this.teacherRepository = teacherRepository;
+        this.byId = byId;
+        this.all = all;
     }
 
+    /**
+     * @return an immutable snapshot shared between callers
+     */
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        return this.all.get(ALL, key -> {
+            List<Teacher> teachers = Collections.unmodifiableList(new ArrayList<>(this.teacherRepository.findAll()));
+            for (Teacher teacher : teachers) {
+                this.byId.put(teacher.getId(), teacher);
+            }
+            return teachers;
+        });
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        if (id == null) {
+            return this.teacherRepository.findById(null).orElse(null);
+        }
+        return this.byId.get(id, key -> this.teacherRepository.findById(key).orElse(null));
     }
+
+    /**
+     * @return the cached teachers among {@code ids}, plus the others loaded with a single query; unknown ids are
+     * left out
+     */
+    public List<Teacher> findAllById(Collection<Long> ids) {
+        List<Teacher> teachers = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Teacher cached = this.byId.getIfPresent(id);
+            if (cached != null) {
+                teachers.add(cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Teacher teacher : this.teacherRepository.findAllById(missing)) {
+                this.byId.put(teacher.getId(), teacher);
+                teachers.add(teacher);
+            }
+        }
+        return teachers;
+    }
+
+    public void evict(Long id) {
+        this.byId.invalidate(id);
+        this.all.invalidateAll();
+    }
+
+    public void evictAll() {
+        this.byId.invalidateAll();
+        this.all.invalidateAll();
+    }
+
 }
@@ -2,21 +2,39 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenDenylist;
+import com.openclassrooms.starterjwt.security.services.PrincipalCache;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final PrincipalCache principalCache;
+
+    private final TokenDenylist tokenDenylist;
+
+    public UserService(UserRepository userRepository, PrincipalCache principalCache, TokenDenylist tokenDenylist) {
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.tokenDenylist = tokenDenylist;
     }
 
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        this.principalCache.evictById(id);
+        // self-contained tokens never go through the principal cache
+        this.tokenDenylist.revokeUser(id);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
@@ -1,20 +1,40 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.util.concurrent.CountDownLatch;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,6 +59,13 @@ class AuthControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("passwordHashingExecutor")
+    private ThreadPoolTaskExecutor passwordHashingExecutor;
+
     private LoginRequest loginRequest;
     private SignupRequest signupRequest;
 
@@ -76,7 +103,7 @@ class AuthControllerTest {
         userRepository.save(user);
 
         // When & Then
-        mockMvc.perform(post("/api/auth/login")
+        performAsync(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(status().isOk())
@@ -105,7 +132,7 @@ class AuthControllerTest {
         loginRequest.setEmail("admin@test.com");
 
         // When & Then
-        mockMvc.perform(post("/api/auth/login")
+        performAsync(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(status().isOk())
@@ -127,7 +154,7 @@ class AuthControllerTest {
         userRepository.save(user);
 
         // When & Then
-        mockMvc.perform(post("/api/auth/login")
+        performAsync(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(status().isUnauthorized());
@@ -165,7 +192,7 @@ class AuthControllerTest {
     @DisplayName("Should register new user successfully")
     void testRegisterUser_Success() throws Exception {
         // When & Then
-        mockMvc.perform(post("/api/auth/register")
+        performAsync(post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(status().isOk())
@@ -193,7 +220,7 @@ class AuthControllerTest {
         userRepository.save(existingUser);
 
         // When & Then
-        mockMvc.perform(post("/api/auth/register")
+        performAsync(post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(status().isBadRequest())
@@ -290,7 +317,266 @@ class AuthControllerTest {
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(status().isBadRequest());
     }
-}
 
+    @Test
+    @DisplayName("Should load the user with a single query on login")
+    void testAuthenticateUser_SingleQuery() throws Exception {
+        // Given
+        userRepository.save(User.builder()
+                .email("test@test.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password(passwordEncoder.encode("password123"))
+                .admin(true)
+                .build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        performAsync(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.admin").value(true));
+
+        // Then
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(1, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+    }
+
+    @Test
+    @DisplayName("Should rehash the stored password with the configured cost after login")
+    void testAuthenticateUser_RehashesPassword() throws Exception {
+        // Given - A user whose hash uses another cost than the configured one
+        String oldHash = BCrypt.hashpw("password123", BCrypt.gensalt(5));
+        User user = userRepository.save(User.builder()
+                .email("test@test.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password(oldHash)
+                .admin(false)
+                .build());
+
+        // When
+        performAsync(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk());
+
+        // Then - The hash is replaced in the background and still verifies
+        String newHash = oldHash;
+        for (int i = 0; i < 100 && newHash.equals(oldHash); i++) {
+            Thread.sleep(50);
+            newHash = userRepository.findById(user.getId()).get().getPassword();
+        }
+        assertTrue(newHash.startsWith("$2a$04$"));
+        assertTrue(passwordEncoder.matches("password123", newHash));
+    }
+
+    // ===== PASSWORD HASHING EXECUTOR TESTS =====
+
+    @Test
+    @DisplayName("Should return 503 with Retry-After when the password hashing executor is saturated")
+    void testAuthenticateUser_ExecutorSaturated_ServiceUnavailable() throws Exception {
+        // Given - Every worker busy and the queue full
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            while (passwordHashingExecutor.getActiveCount() < passwordHashingExecutor.getMaxPoolSize()
+                    || passwordHashingExecutor.getThreadPoolExecutor().getQueue().remainingCapacity() > 0) {
+                try {
+                    passwordHashingExecutor.execute(blocker);
+                } catch (TaskRejectedException e) {
+                    // queue full while the workers are still picking up blockers
+                    Thread.yield();
+                }
+            }
+
+            // When & Then
+            performAsync(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(loginRequest)))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // ===== LOGOUT TESTS =====
+
+    @Test
+    @DisplayName("Should revoke the token on logout so it no longer authenticates")
+    void testLogout_RevokesToken() throws Exception {
+        // Given - A logged in user
+        User user = User.builder()
+                .email("test@test.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password(passwordEncoder.encode("password123"))
+                .admin(false)
+                .build();
+        userRepository.save(user);
+        MvcResult login = performAsync(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode body = objectMapper.readTree(login.getResponse().getContentAsString());
+        String bearer = "Bearer " + body.get("token").asText();
+
+        mockMvc.perform(get("/api/teacher").header("Authorization", bearer))
+                .andExpect(status().isOk());
+
+        // When
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Logged out successfully!"));
+
+        // Then
+        mockMvc.perform(get("/api/teacher").header("Authorization", bearer))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Should revoke the refresh tokens on logout so they can no longer be rotated")
+    void testLogout_RevokesRefreshTokens() throws Exception {
+        // Given - A logged in user holding a refresh token
+        String refreshToken = loginAndGetRefreshToken();
+        MvcResult login = performAsync(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+        String bearer = "Bearer " + objectMapper.readTree(login.getResponse().getContentAsString()).get("token").asText();
+
+        // When
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", bearer))
+                .andExpect(status().isOk());
+
+        // Then
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(refreshToken))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Should return 400 on logout without a valid token")
+    void testLogout_NoToken_BadRequest() throws Exception {
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer not.a.jwt"))
+                .andExpect(status().isBadRequest());
+    }
 
+    // ===== REFRESH TESTS =====
+
+    @Test
+    @DisplayName("Should rotate the refresh token and issue a new access token")
+    void testRefresh_Success() throws Exception {
+        // Given - A logged in user
+        String refreshToken = loginAndGetRefreshToken();
 
+        // When
+        MvcResult result = mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(refreshToken))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").exists())
+                .andExpect(jsonPath("$.username").value("test@test.com"))
+                .andExpect(jsonPath("$.admin").value(false))
+                .andReturn();
+
+        // Then - The new pair works and the refresh token changed
+        JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+        String rotated = body.get("refreshToken").asText();
+        assertNotEquals(refreshToken, rotated);
+        mockMvc.perform(get("/api/teacher").header("Authorization", "Bearer " + body.get("token").asText()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(rotated))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Should revoke the whole token family when a rotated refresh token is reused")
+    void testRefresh_Reuse_RevokesFamily() throws Exception {
+        // Given - A refresh token that has already been rotated
+        String refreshToken = loginAndGetRefreshToken();
+        MvcResult result = mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(refreshToken))))
+                .andExpect(status().isOk())
+                .andReturn();
+        String rotated = objectMapper.readTree(result.getResponse().getContentAsString()).get("refreshToken").asText();
+
+        // When - The old token is presented again
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(refreshToken))))
+                .andExpect(status().isUnauthorized());
+
+        // Then - Its successor is no longer accepted either
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(rotated))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Should return 401 for an unknown refresh token")
+    void testRefresh_UnknownToken_Unauthorized() throws Exception {
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest("unknown"))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Should return 400 when the refresh token is blank")
+    void testRefresh_BlankToken_BadRequest() throws Exception {
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest(""))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String loginAndGetRefreshToken() throws Exception {
+        User user = User.builder()
+                .email("test@test.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password(passwordEncoder.encode("password123"))
+                .admin(false)
+                .build();
+        userRepository.save(user);
+        MvcResult login = performAsync(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").exists())
+                .andReturn();
+        return objectMapper.readTree(login.getResponse().getContentAsString()).get("refreshToken").asText();
+    }
+
+    private static RefreshRequest refreshRequest(String token) {
+        RefreshRequest request = new RefreshRequest();
+        request.setRefreshToken(token);
+        return request;
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
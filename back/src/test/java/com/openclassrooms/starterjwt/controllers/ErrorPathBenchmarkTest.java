@@ -0,0 +1,143 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.exception.ErrorBodyTemplate;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.mapper.TeacherMapperImpl;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.TeacherService;
+
+/**
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("Benchmark for error responses against the success path")
+class ErrorPathBenchmarkTest {
+
+    private static final int WARMUP = 50_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    private static final int ROUNDS = 5;
+
+    private final Teacher teacher = Teacher.builder().id(1L).firstName("Margot").lastName("DELAHAYE").build();
+
+    private final TeacherController teacherController = new TeacherController(new TeacherService(null, new ExpiringCache<>(1, 1), new ExpiringCache<>(1, 1)) {
+        @Override
+        public Teacher findById(Long id) {
+            return teacher;
+        }
+    }, new TeacherMapperImpl());
+
+    private final WebRequest request = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+
+    private final ErrorBodyTemplate unauthorized = new ErrorBodyTemplate(HttpStatus.UNAUTHORIZED);
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+    private final TeacherDto teacherDto = new TeacherDto(1L, "DELAHAYE", "Margot", null, null);
+
+    private long sink;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private long bestNanosPerOp(Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                operation.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / ITERATIONS);
+        }
+        return best;
+    }
+
+    @Test
+    @DisplayName("a malformed id should cost no more than a successful lookup")
+    void benchmarkMalformedId() throws Exception {
+        long success = bestNanosPerOp(() -> sink += teacherController.findById("1", request).getStatusCodeValue());
+        long malformed = bestNanosPerOp(() -> sink += teacherController.findById("abc", request).getStatusCodeValue());
+        long legacy = bestNanosPerOp(() -> {
+            ResponseEntity<?> response;
+            try {
+                response = ResponseEntity.ok(Long.valueOf("abc"));
+            } catch (NumberFormatException e) {
+                response = ResponseEntity.badRequest().build();
+            }
+            sink += response.getStatusCodeValue();
+        });
+
+        System.out.printf("Malformed id: success %d ns/op, malformed %d ns/op, legacy NumberFormatException %d ns/op%n",
+                success, malformed, legacy);
+
+        assertTrue(sink > 0);
+        assertTrue(malformed <= success, "rejecting a malformed id should not cost more than serving a valid one");
+    }
+
+    @Test
+    @DisplayName("writing a 401 body should cost no more than serializing a success body")
+    void benchmarkErrorBody() throws Exception {
+        long success = bestNanosPerOp(() -> {
+            out.reset();
+            sharedMapper.writeValue(out, teacherDto);
+            sink += out.size();
+        });
+        long template = bestNanosPerOp(() -> {
+            out.reset();
+            unauthorized.write(out, "Full authentication is required to access this resource", "/api/session");
+            sink += out.size();
+        });
+        long legacy = bestNanosPerOp(() -> {
+            out.reset();
+            final Map<String, Object> body = new HashMap<>();
+            body.put("status", 401);
+            body.put("error", "Unauthorized");
+            body.put("message", "Full authentication is required to access this resource");
+            body.put("path", "/api/session");
+            new ObjectMapper().writeValue(out, body);
+            sink += out.size();
+        });
+
+        System.out.printf("401 body: success body %d ns/op, template %d ns/op, legacy new ObjectMapper %d ns/op%n",
+                success, template, legacy);
+
+        assertTrue(template <= success, "the 401 body should not cost more than a success body");
+    }
+
+    @Test
+    @DisplayName("a stackless domain exception should be far cheaper than one with a stack trace")
+    void benchmarkExceptions() throws Exception {
+        long stackless = bestNanosPerOp(() -> sink += new NotFoundException().hashCode() & 1);
+        long withStack = bestNanosPerOp(() -> sink += new RuntimeException().hashCode() & 1);
+
+        System.out.printf("Exceptions: stackless %d ns/op, with stack trace %d ns/op%n", stackless, withStack);
+
+        assertTrue(stackless * 5 < withStack, "stackless exceptions should skip the stack walk");
+    }
+}
@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Unit tests for Ids")
+class IdsTest {
+
+    @Test
+    @DisplayName("parse should accept what Long.valueOf accepts")
+    void testParse_Valid() {
+        assertEquals(1L, Ids.parse("1"));
+        assertEquals(42L, Ids.parse("+42"));
+        assertEquals(-7L, Ids.parse("-7"));
+        assertEquals(Long.MAX_VALUE, Ids.parse(String.valueOf(Long.MAX_VALUE)));
+        assertEquals(Long.MIN_VALUE, Ids.parse(String.valueOf(Long.MIN_VALUE)));
+    }
+
+    @Test
+    @DisplayName("parse should return null instead of throwing for malformed ids")
+    void testParse_Invalid() {
+        assertNull(Ids.parse(null));
+        assertNull(Ids.parse(""));
+        assertNull(Ids.parse("-"));
+        assertNull(Ids.parse("invalid"));
+        assertNull(Ids.parse("12a"));
+        assertNull(Ids.parse(" 1"));
+        assertNull(Ids.parse("9223372036854775808"));
+        assertNull(Ids.parse("-9223372036854775809"));
+        assertNull(Ids.parse("99999999999999999999"));
+    }
+}
@@ -6,19 +6,33 @@ import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.SessionReadCache;
+import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 /**
@@ -37,7 +51,16 @@ class SessionControllerIntegrationTest {
     @Autowired
     private TeacherRepository teacherRepository;
     @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private SessionReadCache sessionReadCache;
+    @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private ThreadPoolTaskExecutor applicationTaskExecutor;
     private Teacher teacher;
     private Session testSession;
     private User testUser;
@@ -47,6 +70,9 @@ class SessionControllerIntegrationTest {
         sessionRepository.deleteAll();
         userRepository.deleteAll();
         teacherRepository.deleteAll();
+        // Teachers are cached, drop what earlier tests left behind
+        teacherService.evictAll();
+        sessionReadCache.invalidateNow();
         // Create test teacher
         teacher = Teacher.builder()
                 .firstName("John")
@@ -112,7 +138,7 @@ class SessionControllerIntegrationTest {
                 .users(new ArrayList<>())
                 .build();
         sessionRepository.save(session2);
-        mockMvc.perform(get("/api/session"))
+        mockMvc.perform(get("/api/session").param("unpaged", "true"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].name", is("Yoga Session")))
@@ -125,7 +151,46 @@ class SessionControllerIntegrationTest {
         sessionRepository.deleteAll();
         mockMvc.perform(get("/api/session"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(0)));
+                .andExpect(jsonPath("$.items", hasSize(0)))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+    @Test
+    @DisplayName("Should page through sessions by date then id with a next cursor")
+    @WithMockUser
+    void testFindAll_Paged() throws Exception {
+        sessionRepository.deleteAll();
+        Date date = new Date(1700000000000L);
+        for (String name : new String[] {"First", "Second", "Third"}) {
+            sessionRepository.save(Session.builder()
+                    .name(name)
+                    .date(date)
+                    .description("Same day session")
+                    .teacher(teacher)
+                    .users(new ArrayList<>())
+                    .build());
+        }
+        MvcResult firstPage = mockMvc.perform(get("/api/session").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].name", is("First")))
+                .andExpect(jsonPath("$.items[1].name", is("Second")))
+                .andExpect(jsonPath("$.next").isString())
+                .andReturn();
+        String next = objectMapper.readTree(firstPage.getResponse().getContentAsString()).get("next").asText();
+        mockMvc.perform(get("/api/session").param("size", "2").param("cursor", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name", is("Third")))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+    @Test
+    @DisplayName("Should return 400 for a malformed cursor or page size")
+    @WithMockUser
+    void testFindAll_BadPageRequest() throws Exception {
+        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("size", "0"))
+                .andExpect(status().isBadRequest());
     }
     // ===== CREATE SESSION TESTS =====
     @Test
@@ -146,6 +211,56 @@ class SessionControllerIntegrationTest {
                 .andExpect(jsonPath("$.teacher_id").value(teacher.getId()));
     }
     @Test
+    @DisplayName("Should report unknown teacher and user ids instead of mapping them to null")
+    @WithMockUser
+    void testCreate_UnknownIds() throws Exception {
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("New Yoga Session");
+        sessionDto.setDate(new Date());
+        sessionDto.setDescription("New session description");
+        sessionDto.setTeacher_id(999998L);
+        sessionDto.setUsers(Arrays.asList(testUser.getId(), 999999L));
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.unknownTeacherIds", contains(999998)))
+                .andExpect(jsonPath("$.unknownUserIds", contains(999999)));
+        assertEquals(1, sessionRepository.count());
+    }
+    @Test
+    @DisplayName("Should resolve all participants of a new session with a single lookup")
+    @WithMockUser
+    void testCreate_ResolvesUsersInOneQuery() throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            userIds.add(userRepository.save(User.builder()
+                    .email("member" + i + "@test.com")
+                    .firstName("Member" + i)
+                    .lastName("User")
+                    .password("password")
+                    .admin(false)
+                    .build()).getId());
+        }
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Crowded Session");
+        sessionDto.setDate(new Date());
+        sessionDto.setDescription("Ten participants from the start");
+        sessionDto.setTeacher_id(teacher.getId());
+        sessionDto.setUsers(userIds);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(10)));
+        // no user or teacher is fetched on its own
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getFetchCount());
+        assertEquals(0, statistics.getEntityStatistics(Teacher.class.getName()).getFetchCount());
+        assertEquals(10, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+    }
+    @Test
     @DisplayName("Should return 400 when creating session with blank name")
     @WithMockUser
     void testCreate_BlankName_BadRequest() throws Exception {
@@ -198,7 +313,7 @@ class SessionControllerIntegrationTest {
         mockMvc.perform(delete("/api/session/{id}", testSession.getId()))
                 .andExpect(status().isOk());
         // Verify deletion
-        assert sessionRepository.findById(testSession.getId()).isEmpty();
+        assert sessionRepository.findWithTeacherById(testSession.getId()).isEmpty();
     }
     @Test
     @DisplayName("Should return 404 when deleting non-existent session")
@@ -223,10 +338,10 @@ class SessionControllerIntegrationTest {
                         testSession.getId(), testUser.getId()))
                 .andExpect(status().isOk());
         // Verify participation
-        Session updatedSession = sessionRepository.findById(testSession.getId()).orElse(null);
-        assert updatedSession != null;
-        assert updatedSession.getUsers().size() == 1;
-        assert updatedSession.getUsers().get(0).getId().equals(testUser.getId());
+        assert sessionRepository.findWithTeacherById(testSession.getId()).isPresent();
+        List<Object[]> participants = sessionRepository.findParticipantRows(Collections.singletonList(testSession.getId()));
+        assert participants.size() == 1;
+        assert ((Number) participants.get(0)[1]).longValue() == testUser.getId();
     }
     @Test
     @DisplayName("Should return 400 for invalid session ID when participating")
@@ -236,6 +351,63 @@ class SessionControllerIntegrationTest {
                         "invalid", testUser.getId()))
                 .andExpect(status().isBadRequest());
     }
+    @Test
+    @DisplayName("Should return a JSON 404 body when participating in an unknown session")
+    @WithMockUser
+    void testParticipate_NotFound() throws Exception {
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}",
+                        999999L, testUser.getId()))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"status\":404,\"error\":\"Not Found\"}"));
+    }
+    @Test
+    @DisplayName("Should return a JSON 400 body when already participating")
+    @WithMockUser
+    void testParticipate_AlreadyParticipating() throws Exception {
+        testSession.getUsers().add(testUser);
+        sessionRepository.save(testSession);
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}",
+                        testSession.getId(), testUser.getId()))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"status\":400,\"error\":\"Bad Request\"}"));
+    }
+    @Test
+    @DisplayName("Should return 404 when participating as an unknown user")
+    @WithMockUser
+    void testParticipate_UnknownUser() throws Exception {
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}",
+                        testSession.getId(), 999999L))
+                .andExpect(status().isNotFound());
+    }
+    @Test
+    @DisplayName("Should return 202 and queue the user when the session is full")
+    @WithMockUser
+    void testParticipate_FullSessionWaitlists() throws Exception {
+        Session full = sessionRepository.save(Session.builder()
+                .name("Full Session")
+                .date(new Date())
+                .description("One seat only")
+                .capacity(1)
+                .teacher(teacher)
+                .users(new ArrayList<>())
+                .build());
+        User other = userRepository.save(User.builder()
+                .email("other@test.com")
+                .firstName("Other")
+                .lastName("User")
+                .password("password")
+                .admin(false)
+                .build());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), other.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), testUser.getId()))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), testUser.getId()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session/{id}", full.getId()))
+                .andExpect(jsonPath("$.capacity", is(1)))
+                .andExpect(jsonPath("$.users", contains(other.getId().intValue())));
+    }
     // ===== NO LONGER PARTICIPATE TESTS =====
     @Test
     @DisplayName("Should allow user to stop participating in session")
@@ -248,9 +420,8 @@ class SessionControllerIntegrationTest {
                         testSession.getId(), testUser.getId()))
                 .andExpect(status().isOk());
         // Verify user is removed
-        Session updatedSession = sessionRepository.findById(testSession.getId()).orElse(null);
-        assert updatedSession != null;
-        assert updatedSession.getUsers().isEmpty();
+        assert sessionRepository.findWithTeacherById(testSession.getId()).isPresent();
+        assert sessionRepository.findParticipantRows(Collections.singletonList(testSession.getId())).isEmpty();
     }
     @Test
     @DisplayName("Should return 400 for invalid session ID when unparticipating")
@@ -260,4 +431,456 @@ class SessionControllerIntegrationTest {
                         "invalid", testUser.getId()))
                 .andExpect(status().isBadRequest());
     }
+    // ===== PARTICIPANTS TESTS =====
+    @Test
+    @DisplayName("Should page through participants by user id with a next cursor")
+    @WithMockUser
+    void testFindParticipants_Paged() throws Exception {
+        User second = userRepository.save(User.builder()
+                .email("second@test.com")
+                .firstName("Second")
+                .lastName("User")
+                .password("password")
+                .admin(false)
+                .build());
+        testSession.getUsers().add(testUser);
+        testSession.getUsers().add(second);
+        sessionRepository.save(testSession);
+        mockMvc.perform(get("/api/session/{id}/participants", testSession.getId()).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].id").value(testUser.getId()))
+                .andExpect(jsonPath("$.items[0].firstName", is("Jane")))
+                .andExpect(jsonPath("$.items[0].email").doesNotExist())
+                .andExpect(jsonPath("$.next", is(String.valueOf(testUser.getId()))));
+        mockMvc.perform(get("/api/session/{id}/participants", testSession.getId())
+                        .param("size", "1")
+                        .param("cursor", String.valueOf(testUser.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].id").value(second.getId()))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+    @Test
+    @DisplayName("Should return an empty page for a session without participants")
+    @WithMockUser
+    void testFindParticipants_Empty() throws Exception {
+        mockMvc.perform(get("/api/session/{id}/participants", testSession.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+    @Test
+    @DisplayName("Should return 404 for the participants of an unknown session")
+    @WithMockUser
+    void testFindParticipants_NotFound() throws Exception {
+        mockMvc.perform(get("/api/session/{id}/participants", 999999L))
+                .andExpect(status().isNotFound());
+    }
+    @Test
+    @DisplayName("Should return 400 for a malformed participants cursor")
+    @WithMockUser
+    void testFindParticipants_BadCursor() throws Exception {
+        mockMvc.perform(get("/api/session/{id}/participants", testSession.getId()).param("cursor", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+    @Test
+    @DisplayName("Should return participant counts instead of ids in compact form")
+    @WithMockUser
+    void testFindAll_Compact() throws Exception {
+        testSession.getUsers().add(testUser);
+        sessionRepository.save(testSession);
+        mockMvc.perform(get("/api/session").param("compact", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].participantCount", is(1)))
+                .andExpect(jsonPath("$.items[0].users").doesNotExist());
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()).param("compact", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.participantCount", is(1)))
+                .andExpect(jsonPath("$.users").doesNotExist());
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.participantCount", is(1)))
+                .andExpect(jsonPath("$.users", hasSize(1)));
+    }
+    // ===== BATCH ENROLLMENT TESTS =====
+    @Test
+    @DisplayName("Should enroll a roster in one call with a result per id")
+    @WithMockUser
+    void testEnroll_Batch() throws Exception {
+        testSession.setCapacity(2);
+        testSession.getUsers().add(testUser);
+        sessionRepository.save(testSession);
+        sessionRepository.syncBookedSeats(testSession.getId());
+        List<Long> roster = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            roster.add(userRepository.save(User.builder()
+                    .email("roster" + i + "@test.com")
+                    .firstName("Roster" + i)
+                    .lastName("User")
+                    .password("password")
+                    .admin(false)
+                    .build()).getId());
+        }
+        List<Long> userIds = new ArrayList<>(roster);
+        userIds.add(testUser.getId());
+        userIds.add(999999L);
+        mockMvc.perform(post("/api/session/{id}/participants:batch", testSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Collections.singletonMap("userIds", userIds))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].userId").value(roster.get(0)))
+                .andExpect(jsonPath("$[*].status", contains(
+                        "BOOKED", "WAITLISTED", "WAITLISTED", "ALREADY_PARTICIPATING", "USER_NOT_FOUND")));
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()))
+                .andExpect(jsonPath("$.users", containsInAnyOrder(testUser.getId().intValue(), roster.get(0).intValue())));
+        // the queued users are promoted in roster order
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", testSession.getId(), testUser.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()))
+                .andExpect(jsonPath("$.users", containsInAnyOrder(roster.get(0).intValue(), roster.get(1).intValue())));
+    }
+    @Test
+    @DisplayName("Should reject an empty roster and an unknown session")
+    @WithMockUser
+    void testEnroll_Invalid() throws Exception {
+        mockMvc.perform(post("/api/session/{id}/participants:batch", testSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\":[]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/session/{id}/participants:batch", 999999L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\":[1]}"))
+                .andExpect(status().isNotFound());
+    }
+    // ===== PATCH TESTS =====
+    @Test
+    @DisplayName("Should rename a session with one update, without touching its participants")
+    @WithMockUser
+    void testPatch_NameOnly() throws Exception {
+        // Given - a session with participants
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", testSession.getId(), testUser.getId()))
+                .andExpect(status().isOk());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // When
+        mockMvc.perform(patch("/api/session/{id}", testSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Renamed Session\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Renamed Session")))
+                .andExpect(jsonPath("$.description", is("Morning yoga session")))
+                .andExpect(jsonPath("$.users", contains(testUser.getId().intValue())));
+        // Then - the session, its dirty columns, its participant ids for the response
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityStatistics(Session.class.getName()).getUpdateCount());
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(0, statistics.getCollectionUpdateCount());
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()))
+                .andExpect(jsonPath("$.name", is("Renamed Session")))
+                .andExpect(jsonPath("$.users", hasSize(1)));
+    }
+    @Test
+    @DisplayName("Should book the oldest waitlisted user when a patch adds a seat")
+    @WithMockUser
+    void testPatch_CapacityPromotesWaitlist() throws Exception {
+        // Given - a full session and two users waitlisted, in order
+        Session full = sessionRepository.save(Session.builder()
+                .name("Full Session")
+                .date(new Date())
+                .description("One seat only")
+                .capacity(1)
+                .teacher(teacher)
+                .users(new ArrayList<>())
+                .build());
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(userRepository.save(User.builder()
+                    .email("queued" + i + "@test.com")
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .password("password")
+                    .admin(false)
+                    .build()));
+        }
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), users.get(0).getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), users.get(1).getId()))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), users.get(2).getId()))
+                .andExpect(status().isAccepted());
+        // When
+        mockMvc.perform(patch("/api/session/{id}", full.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"capacity\":2}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.capacity", is(2)))
+                .andExpect(jsonPath("$.users", contains(users.get(0).getId().intValue(), users.get(1).getId().intValue())));
+        // Then - the second queued user is still waiting
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", full.getId(), users.get(2).getId()))
+                .andExpect(status().isBadRequest());
+    }
+    @Test
+    @DisplayName("Should reject blank names, unknown teachers and unknown sessions")
+    @WithMockUser
+    void testPatch_Invalid() throws Exception {
+        mockMvc.perform(patch("/api/session/{id}", testSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"  \"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/api/session/{id}", testSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"teacher_id\":999999}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.unknownTeacherIds", contains(999999)));
+        mockMvc.perform(patch("/api/session/{id}", 999999L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Renamed\"}"))
+                .andExpect(status().isNotFound());
+    }
+    // ===== RANGE TESTS =====
+    @Test
+    @DisplayName("Should return only the sessions dated within the window, in date order")
+    @WithMockUser
+    void testFindInRange_Success() throws Exception {
+        // Given - one session later today, one next week, one in two months
+        Teacher other = teacherRepository.save(Teacher.builder().firstName("Other").lastName("Teacher").build());
+        LocalDate today = LocalDate.now();
+        Session nextWeek = sessionRepository.save(Session.builder()
+                .name("Next week")
+                .date(Timestamp.valueOf(today.plusDays(7).atTime(9, 0)))
+                .description("Next week session")
+                .teacher(other)
+                .users(new ArrayList<>())
+                .build());
+        sessionRepository.save(Session.builder()
+                .name("Later")
+                .date(Timestamp.valueOf(today.plusDays(60).atTime(9, 0)))
+                .description("Much later")
+                .teacher(teacher)
+                .users(new ArrayList<>())
+                .build());
+        // When / Then - both ends are inclusive days
+        mockMvc.perform(get("/api/session")
+                        .param("from", today.toString())
+                        .param("to", today.plusDays(7).toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("Yoga Session")))
+                .andExpect(jsonPath("$[1].name", is("Next week")));
+        mockMvc.perform(get("/api/session")
+                        .param("from", today.toString())
+                        .param("to", today.plusDays(30).toString())
+                        .param("teacherId", other.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(nextWeek.getId().intValue())));
+    }
+    @Test
+    @DisplayName("Should return 400 for malformed, inverted or oversized windows")
+    @WithMockUser
+    void testFindInRange_BadRequest() throws Exception {
+        mockMvc.perform(get("/api/session").param("from", "2024-13-01").param("to", "2024-12-31"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("from", "2024-02-01").param("to", "2024-01-31"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("from", "2024-01-01").param("to", "2024-12-31"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("from", "2024-01-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("from", "2024-01-01").param("to", "2024-01-31").param("teacherId", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+    // ===== STREAMING TESTS =====
+    @Test
+    @DisplayName("Should stream the same listing as the unpaged endpoint")
+    @WithMockUser
+    void testFindAll_Stream() throws Exception {
+        // Given - a second session, only the first one with a participant
+        sessionRepository.save(Session.builder()
+                .name("Evening Yoga")
+                .date(new Date())
+                .description("Relaxing evening session")
+                .teacher(teacher)
+                .users(new ArrayList<>())
+                .build());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", testSession.getId(), testUser.getId()))
+                .andExpect(status().isOk());
+        String unpaged = mockMvc.perform(get("/api/session").param("unpaged", "true"))
+                .andReturn().getResponse().getContentAsString();
+        // When
+        MvcResult result = mockMvc.perform(get("/api/session").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].users", contains(testUser.getId().intValue())))
+                .andExpect(jsonPath("$[1].users", hasSize(0)))
+                .andExpect(content().json(unpaged, true));
+    }
+    @Test
+    @DisplayName("Should stream participant counts only in compact mode")
+    @WithMockUser
+    void testFindAll_StreamCompact() throws Exception {
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", testSession.getId(), testUser.getId()))
+                .andExpect(status().isOk());
+        MvcResult result = mockMvc.perform(get("/api/session").param("stream", "true").param("compact", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].users").doesNotExist())
+                .andExpect(jsonPath("$[0].participantCount", is(1)));
+    }
+    @Test
+    @DisplayName("Should write the stream on the bounded application executor")
+    @WithMockUser
+    void testFindAll_StreamExecutor() throws Exception {
+        long submitted = applicationTaskExecutor.getThreadPoolExecutor().getTaskCount();
+        MvcResult result = mockMvc.perform(get("/api/session").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertEquals(submitted + 1, applicationTaskExecutor.getThreadPoolExecutor().getTaskCount());
+    }
+    // ===== CONDITIONAL GET TESTS =====
+    @Test
+    @DisplayName("Should answer 304 without querying while sessions are unchanged")
+    @WithMockUser
+    void testFindAll_NotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andReturn().getResponse().getHeader("ETag");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/session/{id}", testSession.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        // a booking changes the data, the old tag no longer matches
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", testSession.getId(), testUser.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/session").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$.items[0].users", hasSize(1)));
+    }
+    @Test
+    @DisplayName("Should validate parameters before answering 304")
+    @WithMockUser
+    void testFindAll_NotModified_BadRequestFirst() throws Exception {
+        String etag = mockMvc.perform(get("/api/session"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/session").param("size", "0").header("If-None-Match", etag))
+                .andExpect(status().isBadRequest());
+    }
+    // ===== STATEMENT COUNT TESTS =====
+    @Test
+    @DisplayName("Should load sessions with their participants in a constant number of statements")
+    @WithMockUser
+    void testParticipantsLoading_ConstantStatementCount() throws Exception {
+        // Given - several sessions, each with several participants
+        sessionRepository.deleteAll();
+        List<User> participants = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            participants.add(userRepository.save(User.builder()
+                    .email("participant" + i + "@test.com")
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .password("password")
+                    .admin(false)
+                    .build()));
+        }
+        Long sessionId = null;
+        for (int i = 0; i < 5; i++) {
+            sessionId = sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .date(new Date())
+                    .description("Session with participants")
+                    .teacher(teacher)
+                    .users(new ArrayList<>(participants))
+                    .build()).getId();
+        }
+        // the rows above were written behind the cache's back
+        sessionReadCache.invalidateNow();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // When / Then - full listing: sessions, then participant ids from the join table
+        statistics.clear();
+        mockMvc.perform(get("/api/session").param("unpaged", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].users", hasSize(3)));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        // When / Then - listing and pages again: served from the cached snapshot
+        statistics.clear();
+        mockMvc.perform(get("/api/session").param("unpaged", "true"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/session").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(3)));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        // When / Then - a cold page: the id seek, the sessions, then participant ids
+        sessionReadCache.invalidateNow();
+        statistics.clear();
+        mockMvc.perform(get("/api/session").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(3)))
+                .andExpect(jsonPath("$.items[2].users", hasSize(3)));
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        // a page never builds the snapshot, the next one seeks again
+        statistics.clear();
+        mockMvc.perform(get("/api/session").param("size", "3"))
+                .andExpect(status().isOk());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        // When / Then - cold detail: the session, then its participant ids; then cached
+        sessionReadCache.invalidateNow();
+        statistics.clear();
+        mockMvc.perform(get("/api/session/{id}", sessionId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(3)));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+        statistics.clear();
+        mockMvc.perform(get("/api/session/{id}", sessionId))
+                .andExpect(status().isOk());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        // When / Then - participate and unparticipate: a few conditional statements, whatever the session size
+        statistics.clear();
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", sessionId, testUser.getId()))
+                .andExpect(status().isOk());
+        // seat reservation, join row insert
+        assertEquals(2, statistics.getPrepareStatementCount());
+        mockMvc.perform(get("/api/session/{id}", sessionId))
+                .andExpect(jsonPath("$.users", hasSize(4)));
+        statistics.clear();
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", sessionId, testUser.getId()))
+                .andExpect(status().isOk());
+        // session lock, join row delete, waitlist head, seat release
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+    @Test
+    @DisplayName("Should return 400 when unparticipating without participating and 404 for an unknown session")
+    @WithMockUser
+    void testNoLongerParticipate_NotParticipating() throws Exception {
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}",
+                        testSession.getId(), testUser.getId()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}",
+                        999999L, testUser.getId()))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -1,6 +1,10 @@
 package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,8 +13,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import javax.persistence.EntityManagerFactory;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 /**
@@ -24,12 +33,20 @@ class TeacherControllerIntegrationTest {
     private MockMvc mockMvc;
     @Autowired
     private TeacherRepository teacherRepository;
+    @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private MeterRegistry meterRegistry;
     private Teacher teacher1;
     private Teacher teacher2;
     @BeforeEach
     void setUp() {
         // Clean database
         teacherRepository.deleteAll();
+        // Teachers are cached, drop what earlier tests left behind
+        teacherService.evictAll();
         // Create test teachers
         teacher1 = Teacher.builder()
                 .firstName("John")
@@ -105,4 +122,66 @@ class TeacherControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].firstName", is("Single")))
                 .andExpect(jsonPath("$[0].lastName", is("Teacher")));
     }
+    // ===== CACHE TESTS =====
+    @Test
+    @DisplayName("Should serve repeated teacher reads from memory")
+    @WithMockUser
+    void testFindAll_ServedFromCache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(status().isOk());
+        statistics.clear();
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        mockMvc.perform(get("/api/teacher/{id}", teacher1.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("John")));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(meterRegistry.get("teacher.cache.hit.ratio").gauge().value() > 0);
+    }
+    @Test
+    @DisplayName("Should see changes after an explicit eviction")
+    @WithMockUser
+    void testFindAll_AfterEvict() throws Exception {
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(jsonPath("$", hasSize(2)));
+        teacherRepository.save(Teacher.builder().firstName("New").lastName("Teacher").build());
+        teacherService.evictAll();
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(jsonPath("$", hasSize(3)));
+    }
+    // ===== CONDITIONAL GET TESTS =====
+    @Test
+    @DisplayName("Should answer 304 while the teachers are unchanged")
+    @WithMockUser
+    void testFindAll_NotModified() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/teacher"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=300, private"))
+                .andReturn();
+        String etag = result.getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/teacher").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        teacherRepository.save(Teacher.builder().firstName("New").lastName("Teacher").build());
+        teacherService.evictAll();
+        mockMvc.perform(get("/api/teacher").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$", hasSize(3)));
+    }
+    @Test
+    @DisplayName("Should answer 304 for an unchanged teacher")
+    @WithMockUser
+    void testFindById_NotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/teacher/{id}", teacher1.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/teacher/{id}", teacher1.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/teacher/{id}", teacher2.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
 }
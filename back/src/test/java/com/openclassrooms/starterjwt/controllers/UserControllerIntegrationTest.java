@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,6 +29,8 @@ class UserControllerIntegrationTest {
     private UserRepository userRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private JwtUtils jwtUtils;
     private User testUser;
     private User adminUser;
     @BeforeEach
@@ -138,4 +143,34 @@ class UserControllerIntegrationTest {
         // Verify deletion
         assert userRepository.findById(adminUser.getId()).isEmpty();
     }
+    @Test
+    @DisplayName("Should check ownership by id when the principal comes from token claims")
+    void testDelete_ClaimsPrincipal() throws Exception {
+        UserDetailsImpl claimsPrincipal = UserDetailsImpl.builder()
+                .id(adminUser.getId())
+                .username("admin@test.com")
+                .admin(true)
+                .build();
+        mockMvc.perform(delete("/api/user/{id}", testUser.getId()).with(user(claimsPrincipal)))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(delete("/api/user/{id}", adminUser.getId()).with(user(claimsPrincipal)))
+                .andExpect(status().isOk());
+        // Verify only the owner was deleted
+        assert userRepository.findById(testUser.getId()).isPresent();
+        assert userRepository.findById(adminUser.getId()).isEmpty();
+    }
+    @Test
+    @DisplayName("Should reject a token issued before the user was deleted")
+    void testDelete_RejectsEarlierToken() throws Exception {
+        String token = jwtUtils.generateJwtToken(UserDetailsImpl.builder()
+                .id(testUser.getId())
+                .username(testUser.getEmail())
+                .build());
+        mockMvc.perform(get("/api/user/{id}", adminUser.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/user/{id}", testUser.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/user/{id}", adminUser.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
 }
@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.exception;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisplayName("Unit tests for ErrorBodyTemplate")
+class ErrorBodyTemplateTest {
+
+    private final ErrorBodyTemplate template = new ErrorBodyTemplate(HttpStatus.UNAUTHORIZED);
+
+    @Test
+    @DisplayName("write should produce the same JSON as serializing the fields")
+    void testWrite() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.write(out, "Bad \"credentials\"\n", "/api/é");
+
+        JsonNode body = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals(401, body.get("status").asInt());
+        assertEquals("Unauthorized", body.get("error").asText());
+        assertEquals("Bad \"credentials\"\n", body.get("message").asText());
+        assertEquals("/api/é", body.get("path").asText());
+    }
+
+    @Test
+    @DisplayName("write should render missing values as null")
+    void testWrite_NullValues() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.write(out, null, null);
+
+        JsonNode body = new ObjectMapper().readTree(out.toByteArray());
+        assertTrue(body.get("message").isNull());
+        assertTrue(body.get("path").isNull());
+    }
+
+    @Test
+    @DisplayName("fixedBody should only carry the status and error")
+    void testFixedBody() {
+        assertEquals("{\"status\":404,\"error\":\"Not Found\"}",
+                new String(new ErrorBodyTemplate(HttpStatus.NOT_FOUND).fixedBody(), StandardCharsets.UTF_8));
+    }
+}
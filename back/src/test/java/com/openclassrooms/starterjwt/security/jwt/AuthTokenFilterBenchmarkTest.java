@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("Benchmark for AuthTokenFilter on public and protected routes")
+class AuthTokenFilterBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 50_000;
+
+    private static final int ROUNDS = 5;
+
+    private final JwtUtils jwtUtils = new JwtUtils("openclassrooms", 3600000, true);
+
+    private final AuthTokenFilter filter = new AuthTokenFilter();
+
+    private final HttpServletResponse response = new MockHttpServletResponse();
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private final String bearer = "Bearer " + jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(
+            UserDetailsImpl.builder().id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin")
+                    .admin(true).build(),
+            null, Collections.emptyList()));
+
+    AuthTokenFilterBenchmarkTest() {
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "tokenDenylist", new TokenDenylist(null, 60000L, 16, 900000L, System::currentTimeMillis));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        request.addHeader("Authorization", bearer);
+        return request;
+    }
+
+    private long bestNanosPerOp(MockHttpServletRequest request) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            filter.doFilter(request, response, chain);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                filter.doFilter(request, response, chain);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / ITERATIONS);
+        }
+        return best;
+    }
+
+    @Test
+    @DisplayName("permit-all and preflight routes should cost a fraction of a protected route")
+    void benchmarkRoutes() throws Exception {
+        long protectedRoute = bestNanosPerOp(request("GET", "/api/session"));
+        long publicRoute = bestNanosPerOp(request("POST", "/api/auth/login"));
+        long preflight = bestNanosPerOp(request("OPTIONS", "/api/session"));
+
+        System.out.printf("AuthTokenFilter: protected %d ns/op, public %d ns/op, preflight %d ns/op%n",
+                protectedRoute, publicRoute, preflight);
+
+        assertTrue(publicRoute < protectedRoute / 5, "public routes should skip token verification");
+        assertTrue(preflight < protectedRoute / 5, "preflights should skip token verification");
+    }
+}
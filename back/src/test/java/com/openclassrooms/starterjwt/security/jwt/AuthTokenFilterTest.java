@@ -17,13 +17,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.openclassrooms.starterjwt.security.services.PrincipalCache;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Jwts;
+
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Unit tests for AuthTokenFilter")
 class AuthTokenFilterTest {
@@ -34,6 +39,12 @@ class AuthTokenFilterTest {
     @Mock
     private UserDetailsServiceImpl userDetailsService;
 
+    @Mock
+    private TokenDenylist tokenDenylist;
+
+    @Spy
+    private PrincipalCache principalCache = new PrincipalCache(100, 60000L);
+
     @InjectMocks
     private AuthTokenFilter authTokenFilter;
 
@@ -62,22 +73,24 @@ class AuthTokenFilterTest {
                 .build();
     }
 
+    private JwtVerification validToken(String subject) {
+        return JwtVerification.valid(Jwts.claims().setSubject(subject));
+    }
+
     @Test
     @DisplayName("doFilterInternal should authenticate user with valid JWT token")
     void testDoFilterInternal_ValidToken() throws ServletException, IOException {
         // Given
         String jwt = "valid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn("test@example.com");
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(validToken("test@example.com"));
         when(userDetailsService.loadUserByUsername("test@example.com")).thenReturn(userDetails);
 
         // When
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils).validateJwtToken(jwt);
-        verify(jwtUtils).getUserNameFromJwtToken(jwt);
+        verify(jwtUtils, times(1)).verifyJwtToken(jwt);
         verify(userDetailsService).loadUserByUsername("test@example.com");
         verify(filterChain).doFilter(request, response);
         
@@ -91,14 +104,13 @@ class AuthTokenFilterTest {
 
         String jwt = "invalid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(false);
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(JwtVerification.invalid(JwtVerification.Failure.MALFORMED));
 
 
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
 
-        verify(jwtUtils).validateJwtToken(jwt);
-        verify(jwtUtils, never()).getUserNameFromJwtToken(anyString());
+        verify(jwtUtils).verifyJwtToken(jwt);
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain).doFilter(request, response);
         
@@ -115,7 +127,7 @@ class AuthTokenFilterTest {
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils, never()).validateJwtToken(anyString());
+        verify(jwtUtils, never()).verifyJwtToken(anyString());
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain).doFilter(request, response);
         
@@ -132,7 +144,7 @@ class AuthTokenFilterTest {
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils, never()).validateJwtToken(anyString());
+        verify(jwtUtils, never()).verifyJwtToken(anyString());
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain).doFilter(request, response);
         
@@ -145,8 +157,7 @@ class AuthTokenFilterTest {
         // Given
         String jwt = "valid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn("test@example.com");
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(validToken("test@example.com"));
         when(userDetailsService.loadUserByUsername("test@example.com"))
                 .thenThrow(new RuntimeException("Database error"));
 
@@ -168,7 +179,7 @@ class AuthTokenFilterTest {
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils, never()).validateJwtToken(anyString());
+        verify(jwtUtils, never()).verifyJwtToken(anyString());
         verify(filterChain).doFilter(request, response);
         
         assertNull(SecurityContextHolder.getContext().getAuthentication());
@@ -179,14 +190,13 @@ class AuthTokenFilterTest {
     void testDoFilterInternal_BearerWithNoToken() throws ServletException, IOException {
         // Given
         when(request.getHeader("Authorization")).thenReturn("Bearer ");
-        when(jwtUtils.validateJwtToken("")).thenReturn(false);
+        when(jwtUtils.verifyJwtToken("")).thenReturn(JwtVerification.invalid(JwtVerification.Failure.EMPTY));
 
         // When
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils).validateJwtToken("");
-        verify(jwtUtils, never()).getUserNameFromJwtToken(anyString());
+        verify(jwtUtils).verifyJwtToken("");
         verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain).doFilter(request, response);
         
@@ -199,15 +209,142 @@ class AuthTokenFilterTest {
         // Given
         String jwt = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.test.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
-        when(jwtUtils.validateJwtToken(jwt)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(jwt)).thenReturn("user@test.com");
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(validToken("user@test.com"));
         when(userDetailsService.loadUserByUsername("user@test.com")).thenReturn(userDetails);
 
         // When
         authTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Then
-        verify(jwtUtils).validateJwtToken(jwt);
-        verify(jwtUtils).getUserNameFromJwtToken(jwt);
+        verify(jwtUtils, times(1)).verifyJwtToken(jwt);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal should serve a repeated subject from the principal cache")
+    void testDoFilterInternal_CachedPrincipal() throws ServletException, IOException {
+        // Given
+        String jwt = "valid.jwt.token";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(validToken("test@example.com"));
+        when(userDetailsService.loadUserByUsername("test@example.com")).thenReturn(userDetails);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, times(1)).loadUserByUsername("test@example.com");
+        assertEquals(1, principalCache.getHits());
+        assertEquals(1, principalCache.getMisses());
+        assertEquals("test@example.com", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    @DisplayName("doFilterInternal should build the principal from token claims without loading the user")
+    void testDoFilterInternal_SelfContainedToken() throws ServletException, IOException {
+        // Given
+        String jwt = "self.contained.token";
+        JwtVerification verification = validToken("test@example.com");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(verification);
+        when(jwtUtils.getPrincipalFromClaims(verification)).thenReturn(userDetails);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+        assertSame(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+
+    @Test
+    @DisplayName("doFilterInternal should not trust token claims of a deleted user")
+    void testDoFilterInternal_SelfContainedToken_RevokedUser() throws ServletException, IOException {
+        // Given
+        String jwt = "self.contained.token";
+        JwtVerification verification = validToken("test@example.com");
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(verification);
+        when(jwtUtils.getPrincipalFromClaims(verification)).thenReturn(userDetails);
+        when(tokenDenylist.isUserRevoked(1L)).thenReturn(true);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("doFilterInternal should not authenticate with a revoked token")
+    void testDoFilterInternal_RevokedToken() throws ServletException, IOException {
+        // Given
+        String jwt = "revoked.jwt.token";
+        JwtVerification verification = JwtVerification.valid(Jwts.claims().setSubject("test@example.com").setId("jti-1"));
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + jwt);
+        when(jwtUtils.verifyJwtToken(jwt)).thenReturn(verification);
+        when(tokenDenylist.isRevoked("jti-1")).thenReturn(true);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("doFilter should skip permit-all routes without looking at the token")
+    void testDoFilter_PublicRoute() throws ServletException, IOException {
+        // Given
+        MockHttpServletRequest login = new MockHttpServletRequest("POST", "/api/auth/login");
+        login.setServletPath("/api/auth/login");
+        login.addHeader("Authorization", "Bearer stale.jwt.token");
+
+        // When
+        authTokenFilter.doFilter(login, response, filterChain);
+
+        // Then
+        verifyNoInteractions(jwtUtils, userDetailsService, tokenDenylist);
+        verify(filterChain).doFilter(login, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("doFilter should skip CORS preflight requests")
+    void testDoFilter_Preflight() throws ServletException, IOException {
+        // Given
+        MockHttpServletRequest preflight = new MockHttpServletRequest("OPTIONS", "/api/session");
+        preflight.setServletPath("/api/session");
+
+        // When
+        authTokenFilter.doFilter(preflight, response, filterChain);
+
+        // Then
+        verifyNoInteractions(jwtUtils);
+        verify(filterChain).doFilter(preflight, response);
+    }
+
+    @Test
+    @DisplayName("doFilter should still authenticate protected routes")
+    void testDoFilter_ProtectedRoute() throws ServletException, IOException {
+        // Given
+        MockHttpServletRequest session = new MockHttpServletRequest("GET", "/api/session");
+        session.setServletPath("/api/session");
+        session.addHeader("Authorization", "Bearer valid.jwt.token");
+        when(jwtUtils.verifyJwtToken("valid.jwt.token")).thenReturn(validToken("test@example.com"));
+        when(userDetailsService.loadUserByUsername("test@example.com")).thenReturn(userDetails);
+
+        // When
+        authTokenFilter.doFilter(session, response, filterChain);
+
+        // Then
+        verify(filterChain).doFilter(session, response);
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
     }
 }
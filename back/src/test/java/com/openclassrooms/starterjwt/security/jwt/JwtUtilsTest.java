@@ -4,7 +4,6 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
 
-import java.lang.reflect.Field;
 import java.util.Date;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -28,16 +27,8 @@ class JwtUtilsTest {
     private final String secret = "testSecretKey";
 
     @BeforeEach
-    void setUp() throws Exception {
-        jwtUtils = new JwtUtils();
-        // set private fields via reflection
-        Field secretField = JwtUtils.class.getDeclaredField("jwtSecret");
-        secretField.setAccessible(true);
-        secretField.set(jwtUtils, secret);
-
-        Field expField = JwtUtils.class.getDeclaredField("jwtExpirationMs");
-        expField.setAccessible(true);
-        expField.setInt(jwtUtils, 3600000); // 1 hour
+    void setUp() {
+        jwtUtils = new JwtUtils(secret, 3600000); // 1 hour
     }
 
     @Test
@@ -101,4 +92,80 @@ class JwtUtilsTest {
     void testValidateToken_Empty() {
         assertFalse(jwtUtils.validateJwtToken(""), "Empty token should be invalid");
     }
+
+    @Test
+    @DisplayName("verifyJwtToken returns subject and expiry of a valid token in one pass")
+    void testVerifyToken_Valid() {
+        Date expiration = new Date((new Date()).getTime() + 60000);
+        String token = Jwts.builder()
+            .setSubject("someone@test.com")
+            .setExpiration(expiration)
+            .signWith(SignatureAlgorithm.HS512, secret)
+            .compact();
+
+        JwtVerification verification = jwtUtils.verifyJwtToken(token);
+
+        assertTrue(verification.isValid());
+        assertNull(verification.getFailure());
+        assertEquals("someone@test.com", verification.getSubject());
+        assertEquals(expiration.getTime() / 1000, verification.getExpiration().getTime() / 1000);
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken reports why a token was rejected")
+    void testVerifyToken_FailureReasons() {
+        String expired = Jwts.builder()
+            .setSubject("expired@test.com")
+            .setExpiration(new Date((new Date()).getTime() - 100000))
+            .signWith(SignatureAlgorithm.HS512, secret)
+            .compact();
+        String badSignature = Jwts.builder()
+            .setSubject("someone@test.com")
+            .signWith(SignatureAlgorithm.HS512, "otherSecret")
+            .compact();
+
+        assertEquals(JwtVerification.Failure.EXPIRED, jwtUtils.verifyJwtToken(expired).getFailure());
+        assertEquals(JwtVerification.Failure.INVALID_SIGNATURE, jwtUtils.verifyJwtToken(badSignature).getFailure());
+        assertEquals(JwtVerification.Failure.MALFORMED, jwtUtils.verifyJwtToken("this.is.not.a.jwt").getFailure());
+        assertEquals(JwtVerification.Failure.EMPTY, jwtUtils.verifyJwtToken("").getFailure());
+        assertNull(jwtUtils.verifyJwtToken("").getSubject());
+    }
+
+    @Test
+    @DisplayName("self-contained tokens carry the principal as signed claims")
+    void testSelfContainedToken_RoundTrip() {
+        JwtUtils selfContainedUtils = new JwtUtils(secret, 3600000, true);
+        UserDetailsImpl user = UserDetailsImpl.builder()
+            .id(42L)
+            .username("admin@test.com")
+            .firstName("Ada")
+            .lastName("Admin")
+            .admin(true)
+            .build();
+        Authentication auth = mock(Authentication.class);
+        when(auth.getPrincipal()).thenReturn(user);
+
+        String token = selfContainedUtils.generateJwtToken(auth);
+        UserDetailsImpl principal = selfContainedUtils.getPrincipalFromClaims(selfContainedUtils.verifyJwtToken(token));
+
+        assertNotNull(principal);
+        assertEquals(42L, principal.getId());
+        assertEquals("admin@test.com", principal.getUsername());
+        assertEquals("Ada", principal.getFirstName());
+        assertEquals("Admin", principal.getLastName());
+        assertTrue(principal.getAdmin());
+    }
+
+    @Test
+    @DisplayName("getPrincipalFromClaims returns null outside self-contained mode or for subject-only tokens")
+    void testGetPrincipalFromClaims_NotAvailable() {
+        String subjectOnly = Jwts.builder()
+            .setSubject("someone@test.com")
+            .signWith(SignatureAlgorithm.HS512, secret)
+            .compact();
+        JwtUtils selfContainedUtils = new JwtUtils(secret, 3600000, true);
+
+        assertNull(jwtUtils.getPrincipalFromClaims(jwtUtils.verifyJwtToken(subjectOnly)));
+        assertNull(selfContainedUtils.getPrincipalFromClaims(selfContainedUtils.verifyJwtToken(subjectOnly)));
+    }
 }
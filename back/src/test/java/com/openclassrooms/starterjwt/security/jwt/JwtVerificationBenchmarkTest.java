@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("Benchmark for JWT verification per request")
+class JwtVerificationBenchmarkTest {
+
+    private static final String SECRET = "openclassrooms";
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 50_000;
+
+    private static final int ROUNDS = 5;
+
+    private final JwtUtils jwtUtils = new JwtUtils(SECRET, 3600000);
+
+    private final String token = Jwts.builder()
+            .setSubject("yoga@studio.com")
+            .setIssuedAt(new Date())
+            .setExpiration(new Date((new Date()).getTime() + 3600000))
+            .signWith(SignatureAlgorithm.HS512, SECRET)
+            .compact();
+
+    private long sink;
+
+    // What the filter did before: validate, then parse again for the subject
+    private void twoPassVerification() {
+        Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+        sink += Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject().length();
+    }
+
+    private void singlePassVerification() {
+        sink += jwtUtils.verifyJwtToken(token).getSubject().length();
+    }
+
+    private long bestNanosPerOp(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                operation.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / ITERATIONS);
+        }
+        return best;
+    }
+
+    @Test
+    @DisplayName("single-pass verification should cost roughly half of the two-pass path")
+    void benchmarkVerification() {
+        long twoPass = bestNanosPerOp(this::twoPassVerification);
+        long singlePass = bestNanosPerOp(this::singlePassVerification);
+
+        System.out.printf("JWT verification: two-pass %d ns/op, single-pass %d ns/op (%.2fx)%n",
+                twoPass, singlePass, (double) twoPass / singlePass);
+
+        assertTrue(sink > 0);
+        assertTrue(singlePass < twoPass * 0.7,
+                "single-pass verification should be well under the two-pass cost");
+    }
+}
@@ -0,0 +1,120 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.openclassrooms.starterjwt.models.RevokedToken;
+import com.openclassrooms.starterjwt.repository.RevokedTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Unit tests for TokenDenylist")
+class TokenDenylistTest {
+
+    private static final long TICK_MS = 1000L;
+
+    private static final long ACCESS_TOKEN_TTL_MS = 5000L;
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private TokenDenylist tokenDenylist;
+
+    @BeforeEach
+    void setUp() {
+        tokenDenylist = new TokenDenylist(revokedTokenRepository, TICK_MS, 8, ACCESS_TOKEN_TTL_MS, now::get);
+    }
+
+    @Test
+    @DisplayName("revoke should persist the token id and report it as revoked")
+    void testRevoke() {
+        tokenDenylist.revoke("jti-1", new Date(now.get() + 5000L));
+
+        assertTrue(tokenDenylist.isRevoked("jti-1"));
+        assertFalse(tokenDenylist.isRevoked("jti-2"));
+        assertFalse(tokenDenylist.isRevoked(null));
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    @DisplayName("revoke should ignore tokens that have already expired")
+    void testRevoke_AlreadyExpired() {
+        tokenDenylist.revoke("jti-1", new Date(now.get() - 1L));
+
+        assertFalse(tokenDenylist.isRevoked("jti-1"));
+        verify(revokedTokenRepository, never()).save(any(RevokedToken.class));
+    }
+
+    @Test
+    @DisplayName("revokeUser should reject the user's tokens for one access token lifetime")
+    void testRevokeUser() {
+        tokenDenylist.revokeUser(7L);
+
+        assertTrue(tokenDenylist.isUserRevoked(7L));
+        assertFalse(tokenDenylist.isUserRevoked(8L));
+        assertFalse(tokenDenylist.isUserRevoked(null));
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+
+        now.addAndGet(ACCESS_TOKEN_TTL_MS + TICK_MS);
+        assertFalse(tokenDenylist.isUserRevoked(7L));
+    }
+
+    @Test
+    @DisplayName("entries should drop out once the token has expired")
+    void testExpiry() {
+        tokenDenylist.revoke("short", new Date(now.get() + 2500L));
+        // longer than one revolution of the 8-slot wheel
+        tokenDenylist.revoke("long", new Date(now.get() + 20500L));
+
+        now.addAndGet(2000L);
+        assertTrue(tokenDenylist.isRevoked("short"));
+
+        now.addAndGet(2000L);
+        assertFalse(tokenDenylist.isRevoked("short"));
+        assertTrue(tokenDenylist.isRevoked("long"));
+        assertEquals(1, tokenDenylist.size());
+
+        now.addAndGet(20000L);
+        assertFalse(tokenDenylist.isRevoked("long"));
+        assertEquals(0, tokenDenylist.size());
+    }
+
+    @Test
+    @DisplayName("load should purge expired rows and rebuild the list from the rest")
+    void testLoad() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any(Date.class))).thenReturn(Arrays.asList(
+                RevokedToken.builder().jti("jti-1").expiresAt(new Date(now.get() + 5000L)).build(),
+                RevokedToken.builder().jti("jti-2").expiresAt(new Date(now.get() + 9000L)).build()));
+
+        tokenDenylist.load();
+
+        verify(revokedTokenRepository).deleteByExpiresAtBefore(any(Date.class));
+        assertTrue(tokenDenylist.isRevoked("jti-1"));
+        assertTrue(tokenDenylist.isRevoked("jti-2"));
+        assertEquals(2, tokenDenylist.size());
+    }
+
+    @Test
+    @DisplayName("load should cope with an empty table")
+    void testLoad_Empty() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any(Date.class))).thenReturn(Collections.emptyList());
+
+        tokenDenylist.load();
+
+        assertEquals(0, tokenDenylist.size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Unit tests for AuthRateLimitFilter")
+class AuthRateLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AuthRateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AuthRateLimitFilter();
+        ReflectionTestUtils.setField(filter, "authRateLimiter", new AuthRateLimiter(
+                new TokenBuckets(3, 60000L, 100), new TokenBuckets(2, 60000L, 100), meterRegistry));
+    }
+
+    @Test
+    @DisplayName("should throttle an email once its bucket is empty, even from other IPs")
+    void testThrottleByEmail() throws Exception {
+        assertEquals(200, login("10.0.0.1", "test@test.com").getStatus());
+        assertEquals(200, login("10.0.0.2", "TEST@test.com").getStatus());
+
+        MockHttpServletResponse response = login("10.0.0.3", "test@test.com");
+
+        assertEquals(429, response.getStatus());
+        assertEquals("30", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"status\":429"));
+        assertEquals(1.0, meterRegistry.get("auth.ratelimit.throttled").tag("key", "email").counter().count());
+    }
+
+    @Test
+    @DisplayName("should throttle an IP once its bucket is empty, whatever the email")
+    void testThrottleByIp() throws Exception {
+        assertEquals(200, login("10.0.0.1", "a@test.com").getStatus());
+        assertEquals(200, login("10.0.0.1", "b@test.com").getStatus());
+        assertEquals(200, login("10.0.0.1", "c@test.com").getStatus());
+
+        assertEquals(429, login("10.0.0.1", "d@test.com").getStatus());
+        assertEquals(1.0, meterRegistry.get("auth.ratelimit.throttled").tag("key", "ip").counter().count());
+    }
+
+    @Test
+    @DisplayName("should hand the untouched body to the rest of the chain")
+    void testBodyReplayed() throws Exception {
+        String json = "{\"email\":\"test@test.com\",\"password\":\"password123\"}";
+        MockHttpServletRequest request = request("10.0.0.1", json.getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        HttpServletRequest forwarded = (HttpServletRequest) chain.getRequest();
+        assertEquals(json, StreamUtils.copyToString(forwarded.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("should replay bodies larger than the buffer in full")
+    void testLargeBodyReplayed() throws Exception {
+        byte[] body = new byte[AuthRateLimitFilter.MAX_BODY_BYTES * 3];
+        Arrays.fill(body, (byte) 'x');
+        MockHttpServletRequest request = request("10.0.0.1", body);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        HttpServletRequest forwarded = (HttpServletRequest) chain.getRequest();
+        assertArrayEquals(body, StreamUtils.copyToByteArray(forwarded.getInputStream()));
+    }
+
+    @Test
+    @DisplayName("should feed a buffered body to a non-blocking reader")
+    void testBodyReplayedToReadListener() throws Exception {
+        String json = "{\"email\":\"test@test.com\",\"password\":\"password123\"}";
+        MockHttpServletRequest request = request("10.0.0.1", json.getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        ServletInputStream in = ((HttpServletRequest) chain.getRequest()).getInputStream();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] buffer = new byte[16];
+                while (in.isReady() && !in.isFinished()) {
+                    int n = in.read(buffer);
+                    if (n > 0) {
+                        received.write(buffer, 0, n);
+                    }
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail(t);
+            }
+        });
+
+        assertTrue(allRead.get());
+        assertEquals(json, new String(received.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("should leave other routes and methods alone")
+    void testShouldNotFilter() {
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/auth/login");
+        get.setServletPath("/api/auth/login");
+        MockHttpServletRequest session = new MockHttpServletRequest("POST", "/api/session");
+        session.setServletPath("/api/session");
+
+        assertTrue(filter.shouldNotFilter(get));
+        assertTrue(filter.shouldNotFilter(session));
+        assertFalse(filter.shouldNotFilter(request("10.0.0.1", new byte[0])));
+    }
+
+    @Test
+    @DisplayName("readEmail should find the top level email field only")
+    void testReadEmail() {
+        assertEquals("a@test.com", AuthRateLimitFilter.readEmail(
+                "{\"nested\":{\"email\":\"x\"},\"email\":\"a@test.com\"}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(AuthRateLimitFilter.readEmail("not json".getBytes(StandardCharsets.UTF_8)));
+        assertNull(AuthRateLimitFilter.readEmail("{\"email\":42}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(AuthRateLimitFilter.readEmail(null));
+    }
+
+    private MockHttpServletResponse login(String ip, String email) throws Exception {
+        MockHttpServletRequest request = request(ip,
+                ("{\"email\":\"" + email + "\",\"password\":\"password123\"}").getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String ip, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setServletPath("/api/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+}
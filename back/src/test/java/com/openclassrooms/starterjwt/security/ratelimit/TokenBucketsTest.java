@@ -0,0 +1,57 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Unit tests for TokenBuckets")
+class TokenBucketsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    @Test
+    @DisplayName("tryAcquire should allow a burst up to the capacity then report the wait")
+    void testTryAcquire_Burst() {
+        TokenBuckets buckets = new TokenBuckets(3, 3000L, 100, now::get);
+
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertEquals(1000, buckets.tryAcquire("a"));
+
+        // other keys have their own bucket
+        assertEquals(0, buckets.tryAcquire("b"));
+    }
+
+    @Test
+    @DisplayName("tryAcquire should refill tokens over time without exceeding the capacity")
+    void testTryAcquire_Refill() {
+        TokenBuckets buckets = new TokenBuckets(2, 2000L, 100, now::get);
+        buckets.tryAcquire("a");
+        buckets.tryAcquire("a");
+
+        now.addAndGet(1000L);
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertTrue(buckets.tryAcquire("a") > 0);
+
+        now.addAndGet(60000L);
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertEquals(0, buckets.tryAcquire("a"));
+        assertTrue(buckets.tryAcquire("a") > 0);
+    }
+
+    @Test
+    @DisplayName("the number of tracked keys should stay bounded")
+    void testEviction() {
+        TokenBuckets buckets = new TokenBuckets(1, 1000L, 64, now::get);
+
+        for (int i = 0; i < 10000; i++) {
+            buckets.tryAcquire("client-" + i);
+        }
+
+        assertTrue(buckets.size() <= 64);
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+@DisplayName("Unit tests for BCryptCost")
+class BCryptCostTest {
+
+    @Test
+    @DisplayName("costOf should read the cost factor of a BCrypt hash")
+    void testCostOf() {
+        assertEquals(10, BCryptCost.costOf("$2a$10$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq"));
+        assertEquals(5, BCryptCost.costOf(BCrypt.hashpw("password", BCrypt.gensalt(5))));
+    }
+
+    @Test
+    @DisplayName("costOf should return -1 for anything that is not a BCrypt hash")
+    void testCostOf_NotBCrypt() {
+        assertEquals(-1, BCryptCost.costOf(null));
+        assertEquals(-1, BCryptCost.costOf("plaintext"));
+        assertEquals(-1, BCryptCost.costOf("$2a$xx$abcdef"));
+    }
+
+    @Test
+    @DisplayName("matches should compare the hash cost with the configured one")
+    void testMatches() {
+        BCryptCost cost = new BCryptCost(5);
+
+        assertTrue(cost.matches(BCrypt.hashpw("password", BCrypt.gensalt(5))));
+        assertFalse(cost.matches(BCrypt.hashpw("password", BCrypt.gensalt(4))));
+    }
+
+    @Test
+    @DisplayName("calibrate should never go below the minimum cost")
+    void testCalibrate_MinimumCost() {
+        // a 1 ms target is always below what the floor costs
+        assertEquals(6, BCryptCost.calibrate(1, 6));
+    }
+
+    @Test
+    @DisplayName("calibrate should pick a higher cost for a higher target")
+    void testCalibrate_Target() {
+        int low = BCryptCost.calibrate(1, 4);
+        int high = BCryptCost.calibrate(100, 4);
+
+        assertTrue(high > low);
+        assertTrue(high <= BCryptCost.MAX_COST);
+    }
+}
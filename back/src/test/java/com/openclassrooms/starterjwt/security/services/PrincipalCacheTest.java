@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
+
+@DisplayName("Unit tests for PrincipalCache")
+class PrincipalCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000L);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private PrincipalCache principalCache;
+
+    @BeforeEach
+    void setUp() {
+        principalCache = new PrincipalCache(new ExpiringCache<>(2, 5000L, now::get));
+    }
+
+    private UserDetails load(String username) {
+        loads.incrementAndGet();
+        return UserDetailsImpl.builder()
+                .id((long) username.length())
+                .username(username)
+                .password("password")
+                .build();
+    }
+
+    @Test
+    @DisplayName("get should load once and then serve the cached principal")
+    void testGet_CountsHitsAndMisses() {
+        UserDetails first = principalCache.get("john@test.com", this::load);
+        UserDetails second = principalCache.get("john@test.com", this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, principalCache.getHits());
+        assertEquals(1, principalCache.getMisses());
+    }
+
+    @Test
+    @DisplayName("get should reload the principal once its entry has expired")
+    void testGet_ExpiredEntry() {
+        principalCache.get("john@test.com", this::load);
+        now.addAndGet(5000L);
+        principalCache.get("john@test.com", this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(2, principalCache.getMisses());
+    }
+
+    @Test
+    @DisplayName("get should evict the least recently used principal when full")
+    void testGet_BoundedSize() {
+        principalCache.get("a@test.com", this::load);
+        principalCache.get("bb@test.com", this::load);
+        principalCache.get("a@test.com", this::load);
+        principalCache.get("ccc@test.com", this::load);
+
+        principalCache.get("a@test.com", this::load);
+        assertEquals(3, loads.get());
+        principalCache.get("bb@test.com", this::load);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    @DisplayName("evictById should drop the principal of a deleted user")
+    void testEvictById() {
+        principalCache.get("john@test.com", this::load);
+
+        principalCache.evictById((long) "john@test.com".length());
+        principalCache.get("john@test.com", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("evictById during a lookup should keep the stale principal out of the cache")
+    void testEvictById_DuringLoad() {
+        long id = "john@test.com".length();
+
+        UserDetails loaded = principalCache.get("john@test.com", username -> {
+            UserDetails user = load(username);
+            principalCache.evictById(id);
+            return user;
+        });
+        principalCache.get("john@test.com", this::load);
+
+        assertNotNull(loaded);
+        assertEquals(2, loads.get());
+    }
+}
@@ -62,6 +62,7 @@ class UserDetailsServiceImplTest {
         assertEquals(1L, userDetailsImpl.getId());
         assertEquals("John", userDetailsImpl.getFirstName());
         assertEquals("Doe", userDetailsImpl.getLastName());
+        assertFalse(userDetailsImpl.getAdmin());
     }
 
     @Test
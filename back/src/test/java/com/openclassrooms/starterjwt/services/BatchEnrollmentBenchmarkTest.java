@@ -0,0 +1,95 @@
+package com.openclassrooms.starterjwt.services;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest
+@DisplayName("Benchmark for batch enrollment against one participate call per user")
+class BatchEnrollmentBenchmarkTest {
+
+    private static final int USERS = 2_000;
+
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private List<Long> createUsers(int round) {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .email("bench" + round + "-" + i + "@test.com")
+                    .firstName("Bench")
+                    .lastName("User")
+                    .password("password")
+                    .admin(false)
+                    .build());
+        }
+        List<Long> ids = new ArrayList<>(USERS);
+        for (User user : userRepository.saveAll(users)) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private Long createSession() {
+        return sessionRepository.save(Session.builder()
+                .name("Bench")
+                .date(new Date())
+                .description("Benchmark session")
+                .users(new ArrayList<>())
+                .build()).getId();
+    }
+
+    @Test
+    @DisplayName("a batch should enroll thousands of users per second")
+    void benchmarkEnroll() {
+        long bestBatch = Long.MAX_VALUE;
+        long bestSingle = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Long> userIds = createUsers(round);
+
+            Long batchSession = createSession();
+            long start = System.nanoTime();
+            sessionService.enroll(batchSession, userIds);
+            bestBatch = Math.min(bestBatch, System.nanoTime() - start);
+
+            Long singleSession = createSession();
+            start = System.nanoTime();
+            for (Long userId : userIds) {
+                sessionService.participate(singleSession, userId);
+            }
+            bestSingle = Math.min(bestSingle, System.nanoTime() - start);
+        }
+
+        long batchPerSecond = USERS * 1_000_000_000L / bestBatch;
+        long singlePerSecond = USERS * 1_000_000_000L / bestSingle;
+        System.out.printf("enrollments/s: batch=%d, one call per user=%d%n", batchPerSecond, singlePerSecond);
+        assertTrue(batchPerSecond > 1_000, "batch enrollment should sustain thousands of enrollments per second");
+        assertTrue(batchPerSecond > singlePerSecond, "batching should beat one call per user");
+    }
+}
@@ -0,0 +1,146 @@
+package com.openclassrooms.starterjwt.services;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+/**
+ * Stress tests for seat reservation: many threads booking and cancelling the same session at once
+ */
+@SpringBootTest
+@DisplayName("Session Booking Concurrency Tests")
+class SessionBookingConcurrencyTest {
+    private static final int CAPACITY = 5;
+    private static final int USERS = 40;
+    @Autowired
+    private SessionService sessionService;
+    @Autowired
+    private SessionRepository sessionRepository;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+    private Session session;
+    private List<User> users;
+    @BeforeEach
+    void setUp() {
+        // Clean database
+        waitlistRepository.deleteAll();
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+        // Teachers are cached, drop what earlier tests left behind
+        teacherService.evictAll();
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("John").lastName("Doe").build());
+        session = sessionRepository.save(Session.builder()
+                .name("Popular workshop")
+                .date(new Date())
+                .description("Few seats, many people")
+                .capacity(CAPACITY)
+                .teacher(teacher)
+                .users(new ArrayList<>())
+                .build());
+        users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(User.builder()
+                    .email("user" + i + "@test.com")
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .password("password")
+                    .admin(false)
+                    .build()));
+        }
+    }
+    @Test
+    @DisplayName("Should never overbook when every user books at once")
+    void testConcurrentBooking_NoOverbooking() throws Exception {
+        // When - all users book concurrently
+        List<Participation> outcomes = runConcurrently(users, user -> sessionService.participate(session.getId(), user.getId()));
+        // Then
+        assertThat(outcomes.stream().filter(p -> p == Participation.BOOKED).count()).isEqualTo(CAPACITY);
+        assertThat(outcomes.stream().filter(p -> p == Participation.WAITLISTED).count()).isEqualTo(USERS - CAPACITY);
+        assertSeats(CAPACITY, USERS - CAPACITY);
+    }
+    @Test
+    @DisplayName("Should hand every freed seat to a waitlisted user under concurrent cancellations")
+    void testConcurrentCancellation_PromotesWaitlist() throws Exception {
+        // Given - a full session with a waitlist
+        runConcurrently(users, user -> sessionService.participate(session.getId(), user.getId()));
+        List<Long> booked = participantIds();
+        List<User> leaving = users.stream().filter(u -> booked.contains(u.getId())).collect(Collectors.toList());
+        // When - every booked user cancels concurrently
+        runConcurrently(leaving, user -> {
+            sessionService.noLongerParticipate(session.getId(), user.getId());
+            return null;
+        });
+        // Then - the seats went to the waitlist, still without overbooking
+        assertSeats(CAPACITY, USERS - 2 * CAPACITY);
+        assertThat(participantIds()).doesNotContainAnyElementsOf(booked);
+    }
+    @Test
+    @DisplayName("Should promote waitlisted users in FIFO order")
+    void testCancellation_PromotesInFifoOrder() {
+        // Given - the first users fill the session, the next two queue in order
+        for (int i = 0; i < CAPACITY + 2; i++) {
+            sessionService.participate(session.getId(), users.get(i).getId());
+        }
+        // When
+        sessionService.noLongerParticipate(session.getId(), users.get(0).getId());
+        // Then
+        assertThat(participantIds()).contains(users.get(CAPACITY).getId());
+        assertThat(participantIds()).doesNotContain(users.get(CAPACITY + 1).getId());
+        assertSeats(CAPACITY, 1);
+    }
+    private <R> List<R> runConcurrently(List<User> actors, Action<R> action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(actors.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<R>> futures = new ArrayList<>();
+            for (User actor : actors) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return action.run(actor);
+                }));
+            }
+            start.countDown();
+            List<R> results = new ArrayList<>();
+            for (Future<R> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    private List<Long> participantIds() {
+        return sessionService.findParticipantIds(Collections.singleton(session.getId()))
+                .getOrDefault(session.getId(), Collections.emptyList());
+    }
+    private void assertSeats(int participants, long waiting) {
+        assertThat(participantIds()).hasSize(participants);
+        assertThat(sessionRepository.findWithTeacherById(session.getId()).orElseThrow(IllegalStateException::new).getBookedSeats())
+                .isEqualTo(participants);
+        assertThat(waitlistRepository.countBySessionId(session.getId())).isEqualTo(waiting);
+    }
+    private interface Action<R> {
+        R run(User user) throws Exception;
+    }
+}
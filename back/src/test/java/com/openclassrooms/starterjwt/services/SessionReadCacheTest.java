@@ -0,0 +1,149 @@
+package com.openclassrooms.starterjwt.services;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+/**
+ * Unit tests for SessionReadCache
+ * Versioning, snapshot bounds and metrics, on a controllable clock
+ */
+public class SessionReadCacheTest {
+    private SessionReadCache readCache;
+    private long now;
+    private AtomicInteger loads;
+    private SessionDto session1;
+    private SessionDto session2;
+    @BeforeEach
+    public void setUp() {
+        // Snapshots of up to two sessions, one minute TTL
+        now = 0;
+        readCache = new SessionReadCache(10, 2, 60_000, () -> now);
+        loads = new AtomicInteger();
+        session1 = new SessionDto(1L, "Yoga", new Date(), 1L, "Morning yoga", null, new ArrayList<>(), 0, null, null);
+        session2 = new SessionDto(2L, "Meditation", new Date(), 1L, "Evening meditation", null, new ArrayList<>(), 0, null, null);
+    }
+    // ===== LISTING TESTS =====
+    @Test
+    @DisplayName("Listing is loaded once and served from the snapshot")
+    public void testGetAll_ShouldServeSnapshot() {
+        // When
+        List<SessionDto> first = readCache.getAll(this::loadAll);
+        List<SessionDto> second = readCache.getAll(this::loadAll);
+        // Then
+        assertThat(second).isSameAs(first).containsExactly(session1, session2);
+        assertThat(loads).hasValue(1);
+        assertThat(readCache.getHits()).isEqualTo(1);
+        assertThat(readCache.getMisses()).isEqualTo(1);
+        assertThatThrownBy(() -> second.add(session1)).isInstanceOf(UnsupportedOperationException.class);
+    }
+    @Test
+    @DisplayName("Invalidation forces the next read to reload")
+    public void testInvalidate_ShouldReload() {
+        // Given
+        readCache.getAll(this::loadAll);
+        // When
+        readCache.invalidate();
+        readCache.getAll(this::loadAll);
+        // Then
+        assertThat(loads).hasValue(2);
+        assertThat(readCache.getInvalidations()).isEqualTo(1);
+    }
+    @Test
+    @DisplayName("A load racing with a write is returned but never stored")
+    public void testGetAll_ShouldNotStoreLoadOverlappingWrite() {
+        // When: a write commits while the listing is being loaded
+        readCache.getAll(() -> {
+            readCache.invalidateNow();
+            return loadAll();
+        });
+        readCache.getAll(this::loadAll);
+        // Then
+        assertThat(loads).hasValue(2);
+    }
+    @Test
+    @DisplayName("Listings above the snapshot bound are not kept")
+    public void testGetAll_ShouldNotKeepOversizedListing() {
+        // Given
+        SessionDto session3 = new SessionDto(3L, "Pilates", new Date(), 1L, "Pilates", null, new ArrayList<>(), 0, null, null);
+        // When
+        readCache.getAll(() -> Arrays.asList(session1, session2, session3));
+        List<SessionDto> result = readCache.getAll(() -> null);
+        // Then
+        assertThat(result).isNull();
+        assertThat(readCache.size()).isZero();
+    }
+    @Test
+    @DisplayName("Snapshot expires after its TTL")
+    public void testGetAll_ShouldExpire() {
+        // Given
+        readCache.getAll(this::loadAll);
+        // When
+        now += 60_000;
+        readCache.getAll(this::loadAll);
+        // Then
+        assertThat(loads).hasValue(2);
+    }
+    @Test
+    @DisplayName("Peeking never loads and only sees a current snapshot")
+    public void testGetAllIfPresent_ShouldNotLoad() {
+        // Given
+        assertThat(readCache.getAllIfPresent()).isNull();
+        readCache.getAll(this::loadAll);
+        // When
+        List<SessionDto> current = readCache.getAllIfPresent();
+        readCache.invalidate();
+        // Then
+        assertThat(current).containsExactly(session1, session2);
+        assertThat(readCache.getAllIfPresent()).isNull();
+        assertThat(loads).hasValue(1);
+    }
+    // ===== SINGLE SESSION TESTS =====
+    @Test
+    @DisplayName("Single sessions come from the snapshot when there is one")
+    public void testGet_ShouldReadSnapshot() {
+        // Given
+        readCache.getAll(this::loadAll);
+        // When
+        SessionDto result = readCache.get(2L, id -> { throw new AssertionError("loaded " + id); });
+        SessionDto missing = readCache.get(3L, id -> { throw new AssertionError("loaded " + id); });
+        // Then
+        assertThat(result).isSameAs(session2);
+        assertThat(missing).isNull();
+    }
+    @Test
+    @DisplayName("Single sessions are cached per id until the next write")
+    public void testGet_ShouldCachePerIdUntilInvalidated() {
+        // When
+        readCache.get(1L, this::load);
+        readCache.get(1L, this::load);
+        readCache.invalidate();
+        readCache.get(1L, this::load);
+        // Then
+        assertThat(loads).hasValue(2);
+        assertThat(readCache.getHitRatio()).isEqualTo(1.0 / 3);
+    }
+    @Test
+    @DisplayName("Unknown sessions are not cached")
+    public void testGet_ShouldNotCacheMissingSession() {
+        // When
+        readCache.get(9L, this::load);
+        readCache.get(9L, this::load);
+        // Then
+        assertThat(loads).hasValue(2);
+    }
+    private List<SessionDto> loadAll() {
+        loads.incrementAndGet();
+        return Arrays.asList(session1, session2);
+    }
+    private SessionDto load(Long id) {
+        loads.incrementAndGet();
+        return id == 1L ? session1 : null;
+    }
+}
@@ -1,23 +1,37 @@
 package com.openclassrooms.starterjwt.services;
+import com.openclassrooms.starterjwt.dto.EnrollmentResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipantDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnknownIdsException;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.EnrollmentJdbcRepository;
+import com.openclassrooms.starterjwt.repository.SessionJdbcRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 /**
  * Unit tests for SessionService
@@ -29,6 +43,18 @@ public class SessionServiceTest {
     private SessionRepository sessionRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private WaitlistRepository waitlistRepository;
+    @Mock
+    private EnrollmentJdbcRepository enrollmentJdbcRepository;
+    @Mock
+    private SessionJdbcRepository sessionJdbcRepository;
+    @Mock
+    private SessionMapper sessionMapper;
+    @Mock
+    private SessionReadCache readCache;
+    @Mock
+    private TeacherService teacherService;
     @InjectMocks
     private SessionService sessionService;
     private Session session1;
@@ -99,6 +125,7 @@ public class SessionServiceTest {
         assertThat(result.getId()).isEqualTo(1L);
         assertThat(result.getName()).isEqualTo("Yoga Session");
         verify(sessionRepository, times(1)).save(session1);
+        verify(readCache).invalidate();
     }
     // ===== DELETE TESTS =====
     @Test
@@ -136,30 +163,179 @@ public class SessionServiceTest {
         assertThat(result).isEmpty();
         verify(sessionRepository, times(1)).findAll();
     }
+    @Test
+    public void testFindPage_ShouldStartFromBeginning_WhenNoCursor() {
+        // Given
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(sessionRepository.findFirstPageIds(any())).thenReturn(ids);
+        when(sessionRepository.findAllWithTeacherByIdIn(ids)).thenReturn(Arrays.asList(session1, session2));
+        // When
+        List<Session> result = sessionService.findPage(null, 2);
+        // Then
+        assertThat(result).containsExactly(session1, session2);
+        verify(sessionRepository, never()).findPageIdsAfter(any(), anyLong(), any());
+    }
+    @Test
+    public void testFindPage_ShouldContinueAfterCursor() {
+        // Given
+        SessionCursor cursor = SessionCursor.of(session1);
+        List<Long> ids = Collections.singletonList(2L);
+        when(sessionRepository.findPageIdsAfter(eq(session1.getDate()), eq(session1.getId()), any())).thenReturn(ids);
+        when(sessionRepository.findAllWithTeacherByIdIn(ids)).thenReturn(Collections.singletonList(session2));
+        // When
+        List<Session> result = sessionService.findPage(cursor, 2);
+        // Then
+        assertThat(result).containsExactly(session2);
+        verify(sessionRepository, never()).findFirstPageIds(any());
+    }
+    @Test
+    public void testFindPage_ShouldSkipFetch_WhenPastTheEnd() {
+        // Given
+        when(sessionRepository.findPageIdsAfter(any(), anyLong(), any())).thenReturn(Collections.emptyList());
+        // When
+        List<Session> result = sessionService.findPage(SessionCursor.of(session2), 2);
+        // Then
+        assertThat(result).isEmpty();
+        verify(sessionRepository, never()).findAllWithTeacherByIdIn(any());
+    }
+    @Test
+    public void testFindDtoPage_ShouldSliceCachedListing_AfterCursor() {
+        // Given
+        Date date = new Date();
+        SessionDto dto1 = new SessionDto(1L, "A", date, 1L, "a", null, new ArrayList<>(), 0, null, null);
+        SessionDto dto2 = new SessionDto(2L, "B", date, 1L, "b", null, new ArrayList<>(), 0, null, null);
+        SessionDto dto3 = new SessionDto(3L, "C", new Date(date.getTime() + 1000), 1L, "c", null, new ArrayList<>(), 0, null, null);
+        when(readCache.getAllIfPresent()).thenReturn(Arrays.asList(dto1, dto2, dto3));
+        // When
+        List<SessionDto> first = sessionService.findDtoPage(null, 2);
+        List<SessionDto> next = sessionService.findDtoPage(SessionCursor.of(dto1), 5);
+        List<SessionDto> past = sessionService.findDtoPage(SessionCursor.of(dto3), 5);
+        // Then
+        assertThat(first).containsExactly(dto1, dto2);
+        assertThat(next).containsExactly(dto2, dto3);
+        assertThat(past).isEmpty();
+        verifyNoInteractions(sessionRepository);
+    }
+    @Test
+    public void testFindDtoPage_ShouldReadDatabase_WhenListingIsNotCached() {
+        // Given
+        List<Long> ids = Collections.singletonList(1L);
+        SessionDto dto = new SessionDto();
+        when(readCache.getAllIfPresent()).thenReturn(null);
+        when(sessionRepository.findFirstPageIds(any())).thenReturn(ids);
+        when(sessionRepository.findAllWithTeacherByIdIn(ids)).thenReturn(Collections.singletonList(session1));
+        when(sessionRepository.findParticipantRows(ids)).thenReturn(Collections.emptyList());
+        when(sessionMapper.toDto(Collections.singletonList(session1), Collections.emptyMap()))
+                .thenReturn(Collections.singletonList(dto));
+        // When
+        List<SessionDto> result = sessionService.findDtoPage(null, 2);
+        // Then
+        assertThat(result).containsExactly(dto);
+    }
+    @Test
+    public void testFindDtosInRange_ShouldFilterByTeacher_WhenGiven() {
+        // Given
+        Date from = new Date(0);
+        Date to = new Date();
+        List<Long> ids = Collections.singletonList(1L);
+        SessionDto dto = new SessionDto();
+        when(sessionRepository.findInRangeByTeacher(1L, from, to)).thenReturn(Collections.singletonList(session1));
+        when(sessionRepository.findParticipantRows(ids)).thenReturn(Collections.emptyList());
+        when(sessionMapper.toDto(Collections.singletonList(session1), Collections.emptyMap()))
+                .thenReturn(Collections.singletonList(dto));
+        // When
+        List<SessionDto> result = sessionService.findDtosInRange(from, to, 1L);
+        // Then
+        assertThat(result).containsExactly(dto);
+        verify(sessionRepository, never()).findInRange(any(), any());
+    }
     // ===== GET BY ID TESTS =====
     @Test
     public void testGetById_ShouldReturnSession_WhenSessionExists() {
         // Given
         Long sessionId = 1L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
+        when(sessionRepository.findWithTeacherById(sessionId)).thenReturn(Optional.of(session1));
         // When
         Session result = sessionService.getById(sessionId);
         // Then
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(sessionId);
         assertThat(result.getName()).isEqualTo("Yoga Session");
-        verify(sessionRepository, times(1)).findById(sessionId);
+        verify(sessionRepository, times(1)).findWithTeacherById(sessionId);
     }
     @Test
     public void testGetById_ShouldReturnNull_WhenSessionDoesNotExist() {
         // Given
         Long nonExistentId = 999L;
-        when(sessionRepository.findById(nonExistentId)).thenReturn(Optional.empty());
+        when(sessionRepository.findWithTeacherById(nonExistentId)).thenReturn(Optional.empty());
         // When
         Session result = sessionService.getById(nonExistentId);
         // Then
         assertThat(result).isNull();
-        verify(sessionRepository, times(1)).findById(nonExistentId);
+        verify(sessionRepository, times(1)).findWithTeacherById(nonExistentId);
+    }
+    // ===== PARTICIPANT IDS TESTS =====
+    @Test
+    public void testFindParticipantIds_ShouldGroupJoinRowsBySession() {
+        // Given
+        List<Long> sessionIds = Arrays.asList(1L, 2L, 3L);
+        when(sessionRepository.findParticipantRows(sessionIds)).thenReturn(Arrays.asList(
+                new Object[] {BigInteger.valueOf(1), BigInteger.valueOf(1)},
+                new Object[] {1L, 2L},
+                new Object[] {2L, 2L}));
+        // When
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(sessionIds);
+        // Then
+        assertThat(result).hasSize(2);
+        assertThat(result.get(1L)).containsExactly(1L, 2L);
+        assertThat(result.get(2L)).containsExactly(2L);
+        assertThat(result).doesNotContainKey(3L);
+    }
+    @Test
+    public void testFindParticipantIds_ShouldQueryInChunks_WhenManySessions() {
+        // Given
+        List<Long> sessionIds = new ArrayList<>();
+        for (long id = 1; id <= SessionService.PARTICIPANT_ID_CHUNK + 1; id++) {
+            sessionIds.add(id);
+        }
+        when(sessionRepository.findParticipantRows(sessionIds.subList(0, SessionService.PARTICIPANT_ID_CHUNK)))
+                .thenReturn(Collections.singletonList(new Object[] {1L, 5L}));
+        when(sessionRepository.findParticipantRows(Collections.singletonList((long) SessionService.PARTICIPANT_ID_CHUNK + 1)))
+                .thenReturn(Collections.singletonList(new Object[] {(long) SessionService.PARTICIPANT_ID_CHUNK + 1, 6L}));
+        // When
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(sessionIds);
+        // Then
+        assertThat(result).hasSize(2);
+        assertThat(result.get(1L)).containsExactly(5L);
+        verify(sessionRepository, times(2)).findParticipantRows(any());
+    }
+    @Test
+    public void testFindParticipantIds_ShouldNotQuery_WhenNoSessions() {
+        // When
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(Collections.emptyList());
+        // Then
+        assertThat(result).isEmpty();
+        verify(sessionRepository, never()).findParticipantRows(any());
+    }
+    @Test
+    public void testFindParticipants_ShouldThrowNotFound_WhenSessionDoesNotExist() {
+        // Given
+        when(sessionRepository.findParticipantsAfter(eq(999L), eq(0L), any())).thenReturn(Collections.emptyList());
+        when(sessionRepository.existsById(999L)).thenReturn(false);
+        // When & Then
+        assertThatThrownBy(() -> sessionService.findParticipants(999L, null, 10))
+                .isInstanceOf(NotFoundException.class);
+    }
+    @Test
+    public void testFindParticipants_ShouldSkipExistenceCheck_WhenPageIsNotEmpty() {
+        // Given
+        ParticipantDto participant = new ParticipantDto(2L, "Bob", "Jones");
+        when(sessionRepository.findParticipantsAfter(eq(1L), eq(1L), any())).thenReturn(Collections.singletonList(participant));
+        // When
+        List<ParticipantDto> result = sessionService.findParticipants(1L, 1L, 10);
+        // Then
+        assertThat(result).containsExactly(participant);
+        verify(sessionRepository, never()).existsById(anyLong());
     }
     // ===== UPDATE TESTS =====
     @Test
@@ -181,130 +357,262 @@ public class SessionServiceTest {
         assertThat(result.getName()).isEqualTo("Updated Yoga Session");
         verify(sessionRepository, times(1)).save(any(Session.class));
     }
+    // ===== PATCH TESTS =====
+    @Test
+    public void testPatch_ShouldChangeOnlyGivenFields() {
+        // Given
+        session1.setCapacity(10);
+        SessionPatchDto patch = new SessionPatchDto();
+        patch.setName("Renamed");
+        when(sessionRepository.findWithTeacherById(1L)).thenReturn(Optional.of(session1));
+        // When
+        Session result = sessionService.patch(1L, patch);
+        // Then
+        assertThat(result.getName()).isEqualTo("Renamed");
+        assertThat(result.getDescription()).isEqualTo("Morning yoga session");
+        assertThat(result.getCapacity()).isEqualTo(10);
+        verify(sessionRepository, never()).save(any());
+        verifyNoInteractions(teacherService);
+        verify(readCache).invalidate();
+    }
+    @Test
+    public void testPatch_ShouldClearCapacity_WhenExplicitlyNull() {
+        // Given
+        session1.setCapacity(10);
+        SessionPatchDto patch = new SessionPatchDto();
+        patch.setCapacity(null);
+        when(sessionRepository.findWithTeacherById(1L)).thenReturn(Optional.of(session1));
+        // When
+        Session result = sessionService.patch(1L, patch);
+        // Then
+        assertThat(result.getCapacity()).isNull();
+    }
+    @Test
+    public void testPatch_ShouldThrowUnknownIds_WhenTeacherDoesNotExist() {
+        // Given
+        SessionPatchDto patch = new SessionPatchDto();
+        patch.setTeacher_id(99L);
+        when(sessionRepository.findWithTeacherById(1L)).thenReturn(Optional.of(session1));
+        when(teacherService.findById(99L)).thenReturn(null);
+        // When & Then
+        assertThatThrownBy(() -> sessionService.patch(1L, patch))
+                .isInstanceOf(UnknownIdsException.class);
+        verify(readCache, never()).invalidate();
+    }
+    @Test
+    public void testPatch_ShouldThrowNotFoundException_WhenSessionDoesNotExist() {
+        // Given
+        when(sessionRepository.findWithTeacherById(999L)).thenReturn(Optional.empty());
+        // When & Then
+        assertThatThrownBy(() -> sessionService.patch(999L, new SessionPatchDto()))
+                .isInstanceOf(NotFoundException.class);
+    }
     // ===== PARTICIPATE TESTS =====
     @Test
-    public void testParticipate_ShouldAddUserToSession_WhenValidRequest() {
+    public void testParticipate_ShouldBook_WhenSeatIsLeft() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 1L;
-        session1.setUsers(new ArrayList<>());
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user1));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session1);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenReturn(1);
         // When
-        sessionService.participate(sessionId, userId);
+        Participation result = sessionService.participate(1L, 1L);
         // Then
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(userRepository, times(1)).findById(userId);
-        verify(sessionRepository, times(1)).save(session1);
-        assertThat(session1.getUsers()).contains(user1);
+        assertThat(result).isEqualTo(Participation.BOOKED);
+        verify(sessionRepository, never()).lockById(anyLong());
+        verify(waitlistRepository, never()).enqueue(anyLong(), anyLong());
+        verify(sessionRepository, never()).save(any(Session.class));
+    }
+    @Test
+    public void testParticipate_ShouldWaitlist_WhenSessionIsFull() {
+        // Given
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(waitlistRepository.enqueue(1L, 1L)).thenReturn(1);
+        // When
+        Participation result = sessionService.participate(1L, 1L);
+        // Then
+        assertThat(result).isEqualTo(Participation.WAITLISTED);
+        verify(sessionRepository, times(2)).reserveSeat(1L);
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+    }
+    @Test
+    public void testParticipate_ShouldBook_WhenSeatFreedBeforeLock() {
+        // Given
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0, 1);
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(sessionRepository.addParticipant(1L, 1L)).thenReturn(1);
+        // When
+        Participation result = sessionService.participate(1L, 1L);
+        // Then
+        assertThat(result).isEqualTo(Participation.BOOKED);
+        verify(waitlistRepository, never()).enqueue(anyLong(), anyLong());
     }
     @Test
     public void testParticipate_ShouldThrowNotFoundException_WhenSessionDoesNotExist() {
         // Given
-        Long sessionId = 999L;
-        Long userId = 1L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user1));
+        when(sessionRepository.reserveSeat(999L)).thenReturn(0);
+        when(sessionRepository.lockById(999L)).thenReturn(Optional.empty());
         // When & Then
-        assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.participate(999L, 1L))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(sessionRepository, never()).save(any(Session.class));
     }
     @Test
     public void testParticipate_ShouldThrowNotFoundException_WhenUserDoesNotExist() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 999L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 999L)).thenReturn(0);
+        when(userRepository.existsById(999L)).thenReturn(false);
         // When & Then
-        assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.participate(1L, 999L))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(userRepository, times(1)).findById(userId);
-        verify(sessionRepository, never()).save(any(Session.class));
     }
     @Test
     public void testParticipate_ShouldThrowBadRequestException_WhenUserAlreadyParticipates() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 1L;
-        session1.setUsers(new ArrayList<>(Arrays.asList(user1)));
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user1));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenReturn(0);
+        when(userRepository.existsById(1L)).thenReturn(true);
         // When & Then
-        assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.participate(1L, 1L))
+                .isInstanceOf(BadRequestException.class);
+    }
+    @Test
+    public void testParticipate_ShouldThrowBadRequestException_WhenAlreadyWaitlisted() {
+        // Given
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(waitlistRepository.enqueue(1L, 1L)).thenReturn(0);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        // When & Then
+        assertThatThrownBy(() -> sessionService.participate(1L, 1L))
+                .isInstanceOf(BadRequestException.class);
+    }
+    @Test
+    public void testParticipate_ShouldThrowBadRequestException_WhenConcurrentInsertWins() {
+        // Given
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenThrow(new DataIntegrityViolationException("uk_participate_session_user"));
+        // When & Then
+        assertThatThrownBy(() -> sessionService.participate(1L, 1L))
                 .isInstanceOf(BadRequestException.class);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(userRepository, times(1)).findById(userId);
-        verify(sessionRepository, never()).save(any(Session.class));
     }
     // ===== NO LONGER PARTICIPATE TESTS =====
     @Test
-    public void testNoLongerParticipate_ShouldRemoveUserFromSession_WhenValidRequest() {
+    public void testNoLongerParticipate_ShouldReleaseSeat_WhenNobodyWaits() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 1L;
-        session1.setUsers(new ArrayList<>(Arrays.asList(user1, user2)));
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session1);
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.empty());
         // When
-        sessionService.noLongerParticipate(sessionId, userId);
+        sessionService.noLongerParticipate(1L, 1L);
         // Then
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(sessionRepository, times(1)).save(session1);
-        assertThat(session1.getUsers()).doesNotContain(user1);
-        assertThat(session1.getUsers()).contains(user2);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+        verify(sessionRepository, never()).save(any(Session.class));
+    }
+    @Test
+    public void testNoLongerParticipate_ShouldPromoteOldestWaitlistEntry() {
+        // Given
+        WaitlistEntry entry = WaitlistEntry.builder().id(7L).sessionId(1L).userId(2L).build();
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.of(entry), Optional.empty());
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 2L)).thenReturn(1);
+        // When
+        sessionService.noLongerParticipate(1L, 1L);
+        // Then - the freed seat goes straight back to the head of the queue
+        InOrder inOrder = inOrder(sessionRepository, waitlistRepository);
+        inOrder.verify(sessionRepository).releaseSeat(1L);
+        inOrder.verify(sessionRepository).reserveSeat(1L);
+        inOrder.verify(waitlistRepository).deleteEntry(7L);
+        inOrder.verify(sessionRepository).addParticipant(1L, 2L);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+    }
+    @Test
+    public void testUpdate_ShouldPromoteWaitlist_WhileSeatsAreFree() {
+        // Given - two queued users, one of them deleted meanwhile, and one seat freed by the update
+        WaitlistEntry gone = WaitlistEntry.builder().id(7L).sessionId(1L).userId(9L).build();
+        WaitlistEntry queued = WaitlistEntry.builder().id(8L).sessionId(1L).userId(2L).build();
+        when(sessionRepository.save(session1)).thenReturn(session1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L))
+                .thenReturn(Optional.of(gone), Optional.of(queued), Optional.of(queued));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1, 1, 0);
+        when(sessionRepository.addParticipant(1L, 9L)).thenReturn(0);
+        when(sessionRepository.addParticipant(1L, 2L)).thenReturn(1);
+        // When
+        sessionService.update(1L, session1);
+        // Then
+        verify(waitlistRepository).deleteEntry(7L);
+        verify(waitlistRepository).deleteEntry(8L);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+    }
+    @Test
+    public void testNoLongerParticipate_ShouldLeaveWaitlist_WhenOnlyQueued() {
+        // Given
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
+        when(waitlistRepository.dequeue(1L, 1L)).thenReturn(1);
+        // When
+        sessionService.noLongerParticipate(1L, 1L);
+        // Then
+        verify(sessionRepository, never()).releaseSeat(anyLong());
     }
     @Test
     public void testNoLongerParticipate_ShouldThrowNotFoundException_WhenSessionDoesNotExist() {
         // Given
-        Long sessionId = 999L;
-        Long userId = 1L;
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.lockById(999L)).thenReturn(Optional.empty());
         // When & Then
-        assertThatThrownBy(() -> sessionService.noLongerParticipate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.noLongerParticipate(999L, 1L))
                 .isInstanceOf(NotFoundException.class);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(sessionRepository, never()).save(any(Session.class));
+        verify(sessionRepository, never()).removeParticipant(anyLong(), anyLong());
     }
     @Test
     public void testNoLongerParticipate_ShouldThrowBadRequestException_WhenUserNotParticipating() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 1L;
-        session1.setUsers(new ArrayList<>(Arrays.asList(user2))); // Only user2 participating
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
+        when(waitlistRepository.dequeue(1L, 1L)).thenReturn(0);
         // When & Then
-        assertThatThrownBy(() -> sessionService.noLongerParticipate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.noLongerParticipate(1L, 1L))
                 .isInstanceOf(BadRequestException.class);
-        verify(sessionRepository, times(1)).findById(sessionId);
-        verify(sessionRepository, never()).save(any(Session.class));
+    }
+    // ===== BATCH ENROLLMENT TESTS =====
+    @Test
+    public void testEnroll_ShouldReportEveryIdAndBookWhileSeatsLast() {
+        // Given - user 2 participates, 3 waits, 4 is unknown, 5 and 6 are new but only one seat is left
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(userRepository.findExistingIds(any())).thenReturn(Arrays.asList(2L, 3L, 5L, 6L));
+        when(sessionRepository.findParticipatingUserIds(eq(1L), any())).thenReturn(Collections.singletonList(2L));
+        when(waitlistRepository.findWaitingUserIds(eq(1L), any())).thenReturn(Collections.singletonList(3L));
+        when(sessionRepository.findSeatsLeft(1L)).thenReturn(1);
+        // When
+        List<EnrollmentResultDto> results = sessionService.enroll(1L, Arrays.asList(2L, 3L, 4L, 5L, 6L, 5L));
+        // Then
+        assertThat(results).extracting(EnrollmentResultDto::getStatus).containsExactly(
+                Enrollment.ALREADY_PARTICIPATING, Enrollment.ALREADY_WAITLISTED, Enrollment.USER_NOT_FOUND,
+                Enrollment.BOOKED, Enrollment.WAITLISTED, Enrollment.DUPLICATE);
+        verify(enrollmentJdbcRepository).insertParticipants(1L, Collections.singletonList(5L));
+        verify(enrollmentJdbcRepository).insertWaitlistEntries(1L, Collections.singletonList(6L));
+        verify(sessionRepository).addBookedSeats(1L, 1);
     }
     @Test
-    public void testNoLongerParticipate_ShouldRemoveOnlySpecifiedUser() {
+    public void testEnroll_ShouldBookEveryone_WhenCapacityIsUnlimited() {
         // Given
-        Long sessionId = 1L;
-        Long userId = 1L;
-        User user3 = User.builder()
-                .id(3L)
-                .email("user3@test.com")
-                .firstName("Charlie")
-                .lastName("Brown")
-                .password("password789")
-                .admin(false)
-                .build();
-        session1.setUsers(new ArrayList<>(Arrays.asList(user1, user2, user3)));
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session1));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session1);
+        when(sessionRepository.lockById(1L)).thenReturn(Optional.of(1L));
+        when(userRepository.findExistingIds(any())).thenReturn(Arrays.asList(1L, 2L));
+        when(sessionRepository.findSeatsLeft(1L)).thenReturn(null);
         // When
-        sessionService.noLongerParticipate(sessionId, userId);
+        List<EnrollmentResultDto> results = sessionService.enroll(1L, Arrays.asList(1L, 2L));
         // Then
-        assertThat(session1.getUsers()).hasSize(2);
-        assertThat(session1.getUsers()).doesNotContain(user1);
-        assertThat(session1.getUsers()).containsExactlyInAnyOrder(user2, user3);
-        verify(sessionRepository, times(1)).save(session1);
+        assertThat(results).extracting(EnrollmentResultDto::getStatus).containsOnly(Enrollment.BOOKED);
+        verify(enrollmentJdbcRepository, never()).insertWaitlistEntries(anyLong(), any());
+    }
+    @Test
+    public void testEnroll_ShouldThrowNotFoundException_WhenSessionDoesNotExist() {
+        // Given
+        when(sessionRepository.lockById(999L)).thenReturn(Optional.empty());
+        // When & Then
+        assertThatThrownBy(() -> sessionService.enroll(999L, Collections.singletonList(1L)))
+                .isInstanceOf(NotFoundException.class);
+        verify(enrollmentJdbcRepository, never()).insertParticipants(anyLong(), any());
     }
 }
@@ -1,17 +1,19 @@
 package com.openclassrooms.starterjwt.services;
+import com.openclassrooms.starterjwt.cache.ExpiringCache;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 /**
  * Unit tests for TeacherService
@@ -21,12 +23,16 @@ import static org.mockito.Mockito.*;
 public class TeacherServiceTest {
     @Mock
     private TeacherRepository teacherRepository;
-    @InjectMocks
     private TeacherService teacherService;
+    private long now;
     private Teacher teacher1;
     private Teacher teacher2;
     @BeforeEach
     public void setUp() {
+        // Caches on a controllable clock with a one minute TTL
+        now = 0;
+        teacherService = new TeacherService(teacherRepository,
+                new ExpiringCache<>(10, 60_000, () -> now), new ExpiringCache<>(1, 60_000, () -> now));
         // Initialize test data before each test
         teacher1 = Teacher.builder()
                 .id(1L)
@@ -103,4 +109,78 @@ public class TeacherServiceTest {
         assertThat(result).isNull();
         verify(teacherRepository, times(1)).findById(null);
     }
+    // ===== CACHE TESTS =====
+    @Test
+    public void testFindById_ShouldServeRepeatedReadsFromCache() {
+        // Given
+        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher1));
+        // When
+        teacherService.findById(1L);
+        Teacher result = teacherService.findById(1L);
+        // Then
+        assertThat(result).isSameAs(teacher1);
+        verify(teacherRepository, times(1)).findById(1L);
+    }
+    @Test
+    public void testFindById_ShouldReloadAfterTtl() {
+        // Given
+        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher1));
+        teacherService.findById(1L);
+        // When
+        now += 60_001;
+        teacherService.findById(1L);
+        // Then
+        verify(teacherRepository, times(2)).findById(1L);
+    }
+    @Test
+    public void testFindAll_ShouldReturnImmutableSnapshotAndWarmFindById() {
+        // Given
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher1, teacher2));
+        // When
+        List<Teacher> first = teacherService.findAll();
+        List<Teacher> second = teacherService.findAll();
+        Teacher byId = teacherService.findById(2L);
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(byId).isSameAs(teacher2);
+        assertThatThrownBy(() -> first.add(teacher1)).isInstanceOf(UnsupportedOperationException.class);
+        verify(teacherRepository, times(1)).findAll();
+        verify(teacherRepository, never()).findById(any());
+    }
+    @Test
+    public void testFindAllById_ShouldOnlyQueryMissingIds() {
+        // Given
+        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher1));
+        when(teacherRepository.findAllById(Collections.singletonList(2L))).thenReturn(Collections.singletonList(teacher2));
+        teacherService.findById(1L);
+        // When
+        List<Teacher> result = teacherService.findAllById(Arrays.asList(1L, 2L));
+        // Then
+        assertThat(result).containsExactlyInAnyOrder(teacher1, teacher2);
+        verify(teacherRepository, times(1)).findAllById(Collections.singletonList(2L));
+    }
+    @Test
+    public void testEvict_ShouldDropTeacherAndSnapshot() {
+        // Given
+        when(teacherRepository.findAll()).thenReturn(Arrays.asList(teacher1, teacher2));
+        teacherService.findAll();
+        // When
+        teacherService.evict(1L);
+        teacherService.findAll();
+        teacherService.findById(1L);
+        // Then
+        verify(teacherRepository, times(2)).findAll();
+        verify(teacherRepository, never()).findById(1L);
+    }
+    @Test
+    public void testEvictAll_ShouldDropEverything() {
+        // Given
+        when(teacherRepository.findById(1L)).thenReturn(Optional.of(teacher1));
+        teacherService.findById(1L);
+        // When
+        teacherService.evictAll();
+        teacherService.findById(1L);
+        // Then
+        verify(teacherRepository, times(2)).findById(1L);
+    }
 }
@@ -23,7 +23,7 @@ describe('Login spec', () => {
       }
     }).as('loginRequest');
 
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: []
     }).as('sessions');
@@ -48,7 +48,7 @@ describe('Login spec', () => {
       }
     }).as('loginRequest');
 
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: []
     }).as('sessions');
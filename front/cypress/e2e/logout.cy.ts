@@ -18,7 +18,7 @@ describe('Logout spec', () => {
   it('should not be able to access protected routes after logout', () => {
     cy.contains('Logout').click();
     
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 401,
       body: { message: 'Unauthorized' }
     }).as('unauthorizedSessions');
@@ -64,7 +64,7 @@ describe('Session detail spec', () => {
       body: {}
     }).as('deleteSession');
 
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: [
         {
@@ -52,7 +52,7 @@ describe('Session form - Create', () => {
     }).as('createSession');
 
     // Mock updated sessions list after creation
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: [
         {
@@ -178,7 +178,7 @@ describe('Session form - Update', () => {
     }).as('updateSession');
 
     // Mock updated sessions list after update
-    cy.intercept('GET', '/api/session', {
+    cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: [
         {
@@ -221,7 +221,7 @@ describe('Session form - Non-admin access', () => {
   beforeEach(() => {
     cy.loginAsUser();
 
-     cy.intercept('GET', '/api/session', {
+     cy.intercept('GET', '/api/session?unpaged=true', {
       statusCode: 200,
       body: []
     }).as('sessions');
@@ -40,7 +40,7 @@ Cypress.Commands.add('loginAsAdmin', () => {
       admin: true
     }
   }).as('loginRequest');
-  cy.intercept('GET', '/api/session', {
+  cy.intercept('GET', '/api/session?unpaged=true', {
     statusCode: 200,
     body: [
       {
@@ -89,7 +89,7 @@ Cypress.Commands.add('loginAsUser', () => {
       admin: false
     }
   }).as('loginRequest');
-  cy.intercept('GET', '/api/session', {
+  cy.intercept('GET', '/api/session?unpaged=true', {
     statusCode: 200,
     body: [
       {
@@ -139,7 +139,7 @@ Cypress.Commands.add('login', (email: string, password: string) => {
       admin: false
     }
   }).as('loginRequest');
-  cy.intercept('GET', '/api/session', {
+  cy.intercept('GET', '/api/session?unpaged=true', {
     statusCode: 200,
     body: []
   }).as('sessions');
@@ -64,7 +64,7 @@ describe('Session CRUD Integration Tests', () => {
         });
       });
 
-      const sessionsReq = httpMock.expectOne('api/session');
+      const sessionsReq = httpMock.expectOne('api/session?unpaged=true');
       expect(sessionsReq.request.method).toBe('GET');
       sessionsReq.flush(mockSessions);
 
@@ -199,7 +199,7 @@ describe('Session CRUD Integration Tests', () => {
       expect(deleteReq.request.method).toBe('DELETE');
       deleteReq.flush({});
 
-      const allReq = httpMock.expectOne('api/session');
+      const allReq = httpMock.expectOne('api/session?unpaged=true');
       allReq.flush([{ ...mockSession, id: 2 }]);
     });
   });
@@ -126,7 +126,7 @@ describe('Teacher and Session Relationship Integration Tests', () => {
         });
       });
 
-      const sessionsReq = httpMock.expectOne('api/session');
+      const sessionsReq = httpMock.expectOne('api/session?unpaged=true');
       sessionsReq.flush(mockSessions);
 
       // Requests for teachers
@@ -238,7 +238,7 @@ describe('Teacher and Session Relationship Integration Tests', () => {
         expect(teacher2Sessions.length).toBe(1);
       });
 
-      const req = httpMock.expectOne('api/session');
+      const req = httpMock.expectOne('api/session?unpaged=true');
       req.flush(mockSessions);
     });
 
@@ -254,7 +254,7 @@ describe('Teacher and Session Relationship Integration Tests', () => {
         });
       });
 
-      const req = httpMock.expectOne('api/session');
+      const req = httpMock.expectOne('api/session?unpaged=true');
       req.flush(mockSessions);
     });
   });
@@ -74,4 +74,28 @@ describe('AuthService', () => {
       req.flush(mockResponse);
     });
   });
+
+  describe('refresh', () => {
+    it('should send POST request to refresh endpoint with the refresh token', () => {
+      const mockResponse: SessionInformation = {
+        token: 'jwt-token-def456',
+        type: 'Bearer',
+        id: 1,
+        username: 'test@test.com',
+        firstName: 'Test',
+        lastName: 'User',
+        admin: false,
+        refreshToken: 'refresh-2'
+      };
+
+      service.refresh('refresh-1').subscribe((response) => {
+        expect(response).toEqual(mockResponse);
+      });
+
+      const req = httpMock.expectOne('api/auth/refresh');
+      expect(req.request.method).toBe('POST');
+      expect(req.request.body).toEqual({ refreshToken: 'refresh-1' });
+      req.flush(mockResponse);
+    });
+  });
 });
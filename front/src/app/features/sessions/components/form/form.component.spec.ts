@@ -157,7 +157,7 @@ describe('FormComponent', () => {
     });
 
     it('should update session when form is submitted', () => {
-      const updateSpy = jest.spyOn(sessionApiService, 'update').mockReturnValue(of(mockSession));
+      const patchSpy = jest.spyOn(sessionApiService, 'patch').mockReturnValue(of(mockSession));
       const navigateSpy = jest.spyOn(router, 'navigate');
       const snackBarSpy = jest.spyOn(matSnackBar, 'open');
 
@@ -167,7 +167,7 @@ describe('FormComponent', () => {
 
       component.submit();
 
-      expect(updateSpy).toHaveBeenCalledWith('1', expect.any(Object));
+      expect(patchSpy).toHaveBeenCalledWith('1', expect.not.objectContaining({ users: expect.anything() }));
       expect(snackBarSpy).toHaveBeenCalledWith('Session updated !', 'Close', { duration: 3000 });
       expect(navigateSpy).toHaveBeenCalledWith(['sessions']);
     });
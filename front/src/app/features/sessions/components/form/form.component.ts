@@ -54,8 +54,9 @@ export class FormComponent implements OnInit {
         .create(session)
         .subscribe((_: Session) => this.exitPage('Session created !'));
     } else {
+      // only the form's fields: participants and capacity are left as they are
       this.sessionApiService
-        .update(this.id!, session)
+        .patch(this.id!, session)
         .subscribe((_: Session) => this.exitPage('Session updated !'));
     }
   }
@@ -5,6 +5,8 @@ export interface Session {
   date: Date;
   teacher_id: number;
   users: number[];
+  capacity?: number;
+  participantCount?: number;
   createdAt?: Date;
   updatedAt?: Date;
 }
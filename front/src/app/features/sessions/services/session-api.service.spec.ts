@@ -48,7 +48,7 @@ describe('SessionsService', () => {
         expect(sessions.length).toBe(1);
       });
 
-      const req = httpMock.expectOne('api/session');
+      const req = httpMock.expectOne('api/session?unpaged=true');
       expect(req.request.method).toBe('GET');
       req.flush(mockSessions);
     });
@@ -132,6 +132,28 @@ describe('SessionsService', () => {
     });
   });
 
+  describe('patch', () => {
+    it('should send only the changed fields', () => {
+      const patchedSession: Session = {
+        id: 1,
+        name: 'Renamed Session',
+        description: 'Description',
+        date: new Date(),
+        teacher_id: 1,
+        users: [1]
+      };
+
+      service.patch('1', { name: 'Renamed Session' }).subscribe((session) => {
+        expect(session).toEqual(patchedSession);
+      });
+
+      const req = httpMock.expectOne('api/session/1');
+      expect(req.request.method).toBe('PATCH');
+      expect(req.request.body).toEqual({ name: 'Renamed Session' });
+      req.flush(patchedSession);
+    });
+  });
+
   describe('participate', () => {
     it('should add user participation to session', () => {
       service.participate('1', '2').subscribe();
@@ -14,7 +14,7 @@ export class SessionApiService {
   }
 
   public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+    return this.httpClient.get<Session[]>(this.pathService, { params: { unpaged: 'true' } });
   }
 
   public detail(id: string): Observable<Session> {
@@ -33,6 +33,11 @@ export class SessionApiService {
     return this.httpClient.put<Session>(`${this.pathService}/${id}`, session);
   }
 
+  // only the given fields change, participants are left alone
+  public patch(id: string, changes: Partial<Session>): Observable<Session> {
+    return this.httpClient.patch<Session>(`${this.pathService}/${id}`, changes);
+  }
+
   public participate(id: string, userId: string): Observable<void> {
     return this.httpClient.post<void>(`${this.pathService}/${id}/participate/${userId}`, null);
   }
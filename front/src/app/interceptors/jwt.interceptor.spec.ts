@@ -0,0 +1,97 @@
+import { HttpClient, HTTP_INTERCEPTORS } from '@angular/common/http';
+import { HttpClientTestingModule, HttpTestingController } from '@angular/common/http/testing';
+import { TestBed } from '@angular/core/testing';
+import { expect } from '@jest/globals';
+
+import { JwtInterceptor } from './jwt.interceptor';
+import { SessionService } from '../services/session.service';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
+
+describe('JwtInterceptor', () => {
+  let httpClient: HttpClient;
+  let httpMock: HttpTestingController;
+  let sessionService: SessionService;
+
+  const session: SessionInformation = {
+    token: 'access-1',
+    type: 'Bearer',
+    id: 1,
+    username: 'test@test.com',
+    firstName: 'Test',
+    lastName: 'User',
+    admin: false,
+    refreshToken: 'refresh-1'
+  };
+
+  const refreshed: SessionInformation = { ...session, token: 'access-2', refreshToken: 'refresh-2' };
+
+  beforeEach(() => {
+    TestBed.configureTestingModule({
+      imports: [HttpClientTestingModule],
+      providers: [
+        { provide: HTTP_INTERCEPTORS, useClass: JwtInterceptor, multi: true },
+      ]
+    });
+    httpClient = TestBed.inject(HttpClient);
+    httpMock = TestBed.inject(HttpTestingController);
+    sessionService = TestBed.inject(SessionService);
+    sessionService.logIn(session);
+  });
+
+  afterEach(() => {
+    httpMock.verify();
+  });
+
+  it('should add the access token to requests', () => {
+    httpClient.get('api/session').subscribe();
+
+    const req = httpMock.expectOne('api/session');
+    expect(req.request.headers.get('Authorization')).toBe('Bearer access-1');
+    req.flush([]);
+  });
+
+  it('should refresh once on 401 and retry with the new access token', () => {
+    let first: unknown;
+    let second: unknown;
+    httpClient.get('api/session').subscribe((body) => first = body);
+    httpClient.get('api/teacher').subscribe((body) => second = body);
+
+    httpMock.expectOne('api/session').flush(null, { status: 401, statusText: 'Unauthorized' });
+    httpMock.expectOne('api/teacher').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    const refresh = httpMock.expectOne('api/auth/refresh');
+    expect(refresh.request.body).toEqual({ refreshToken: 'refresh-1' });
+    refresh.flush(refreshed);
+
+    const retriedSession = httpMock.expectOne('api/session');
+    const retriedTeacher = httpMock.expectOne('api/teacher');
+    expect(retriedSession.request.headers.get('Authorization')).toBe('Bearer access-2');
+    expect(retriedTeacher.request.headers.get('Authorization')).toBe('Bearer access-2');
+    retriedSession.flush(['session']);
+    retriedTeacher.flush(['teacher']);
+
+    expect(first).toEqual(['session']);
+    expect(second).toEqual(['teacher']);
+    expect(sessionService.sessionInformation).toEqual(refreshed);
+  });
+
+  it('should log out and surface the 401 when the refresh is rejected', () => {
+    let status: number | undefined;
+    httpClient.get('api/session').subscribe({ error: (error) => status = error.status });
+
+    httpMock.expectOne('api/session').flush(null, { status: 401, statusText: 'Unauthorized' });
+    httpMock.expectOne('api/auth/refresh').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    expect(status).toBe(401);
+    expect(sessionService.isLogged).toBe(false);
+  });
+
+  it('should not try to refresh auth calls', () => {
+    let status: number | undefined;
+    httpClient.post('api/auth/login', {}).subscribe({ error: (error) => status = error.status });
+
+    httpMock.expectOne('api/auth/login').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    expect(status).toBe(401);
+  });
+});
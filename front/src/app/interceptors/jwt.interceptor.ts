@@ -1,19 +1,57 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
-import { Injectable } from "@angular/core";
+import { HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { Injectable, Injector } from "@angular/core";
+import { Observable, throwError } from 'rxjs';
+import { catchError, finalize, shareReplay, switchMap, tap } from 'rxjs/operators';
+import { AuthService } from '../features/auth/services/auth.service';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
-  constructor(private sessionService: SessionService) {}
+  // refresh tokens are single use, concurrent 401s must share one refresh call
+  private refreshing: Observable<SessionInformation> | null = null;
 
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  // AuthService needs HttpClient, which needs this interceptor: resolve it lazily
+  constructor(private sessionService: SessionService, private injector: Injector) {}
+
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    return next.handle(this.withToken(request)).pipe(
+      catchError((error) => {
+        const refreshToken = this.sessionService.sessionInformation?.refreshToken;
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401
+            || !refreshToken || request.url.startsWith('api/auth/')) {
+          return throwError(() => error);
+        }
+        return this.refresh(refreshToken).pipe(
+          catchError(() => {
+            this.sessionService.logOut();
+            return throwError(() => error);
+          }),
+          switchMap(() => next.handle(this.withToken(request)))
+        );
+      })
+    );
+  }
+
+  private withToken(request: HttpRequest<any>): HttpRequest<any> {
+    if (!this.sessionService.isLogged) {
+      return request;
+    }
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
+  }
+
+  private refresh(refreshToken: string): Observable<SessionInformation> {
+    if (!this.refreshing) {
+      this.refreshing = this.injector.get(AuthService).refresh(refreshToken).pipe(
+        tap((sessionInformation) => this.sessionService.logIn(sessionInformation)),
+        finalize(() => this.refreshing = null),
+        shareReplay(1)
+      );
     }
-    return next.handle(request);
+    return this.refreshing;
   }
 }
@@ -12,8 +12,12 @@ CREATE TABLE `SESSIONS` (
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `booked_seats` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  KEY `idx_sessions_date_id` (`date`, `id`),
+  KEY `idx_sessions_teacher_date` (`teacher_id`, `date`)
 );
 
 CREATE TABLE `USERS` (
@@ -29,12 +33,40 @@ CREATE TABLE `USERS` (
 
 CREATE TABLE `PARTICIPATE` (
   `user_id` INT, 
-  `session_id` INT
+  `session_id` INT,
+  UNIQUE KEY `uk_participate_session_user` (`session_id`, `user_id`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE KEY `uk_waitlist_session_user` (`session_id`, `user_id`)
+);
+
+CREATE TABLE `REVOKED_TOKENS` (
+  `jti` VARCHAR(36) PRIMARY KEY,
+  `expires_at` DATETIME NOT NULL
+);
+
+CREATE TABLE `REFRESH_TOKENS` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `token_hash` VARCHAR(64) NOT NULL UNIQUE,
+  `user_id` INT NOT NULL,
+  `family` VARCHAR(36) NOT NULL,
+  `expires_at` DATETIME NOT NULL,
+  `used` BOOLEAN NOT NULL DEFAULT false,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  INDEX `idx_refresh_tokens_family` (`family`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `REFRESH_TOKENS` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),